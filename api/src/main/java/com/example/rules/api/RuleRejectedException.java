@@ -0,0 +1,27 @@
+package com.example.rules.api;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a rule run is refused because the queue for its request class is full
+ * <p>Nothing is logged for a rejected request, callers should back off before submitting it again.</p>
+ */
+@Getter
+public class RuleRejectedException extends RuleException {
+
+    /**
+     * The class of the rejected request
+     */
+    private final Class<? extends RuleRequest> requestClass;
+
+    /**
+     * The count of runs of the same request class waiting when the request was rejected
+     */
+    private final int queueDepth;
+
+    public RuleRejectedException(Class<? extends RuleRequest> requestClass, int queueDepth) {
+        super("Rule queue for " + requestClass.getSimpleName() + " is full, " + queueDepth + " run(s) waiting");
+        this.requestClass = requestClass;
+        this.queueDepth = queueDepth;
+    }
+}
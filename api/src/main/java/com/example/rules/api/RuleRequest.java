@@ -13,6 +13,25 @@ public interface RuleRequest {
         RUNNING,
         SUCCESS,
         FAILURE,
-        CANCELED
+        CANCELED,
+        TIMEOUT
+    }
+
+    /**
+     * Scheduling priority classes, higher priorities are scheduled first
+     */
+    enum Priority {
+        LOW,
+        NORMAL,
+        HIGH
+    }
+
+    /**
+     * Returns the scheduling priority of this request
+     * <p>The priority of a request class can also be set with the {@code rule.priority.<request class name>} property,
+     * which takes precedence.</p>
+     */
+    default Priority getPriority() {
+        return Priority.NORMAL;
     }
 }
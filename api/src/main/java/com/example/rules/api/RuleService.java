@@ -1,6 +1,7 @@
 package com.example.rules.api;
 
 import java.io.Serializable;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.concurrent.Future;
 
@@ -14,6 +15,7 @@ public interface RuleService {
      *
      * @param request the RuleRequest
      * @return an ID used to track the run
+     * @throws RuleRejectedException if the queue for the request class is full
      */
     long schedule(RuleRequest request);
 
@@ -22,9 +24,33 @@ public interface RuleService {
      *
      * @param request the RuleRequest
      * @return a Future used to track the run
+     * @throws RuleRejectedException if the queue for the request class is full
      */
     Future<Serializable> submit(RuleRequest request);
 
+    /**
+     * Schedules an asynchronous rule run against a given request, to complete within a timeout
+     * <p>Once the timeout has passed, a run still waiting to start is cancelled, and a running one is stopped and
+     * completes with {@code null}. Either way the run ends in the TIMEOUT state.</p>
+     *
+     * @param request the RuleRequest
+     * @param timeout the time allowed for the run, from submission
+     * @return a Future used to track the run
+     * @throws RuleRejectedException if the queue for the request class is full
+     */
+    Future<Serializable> submit(RuleRequest request, Duration timeout);
+
+    /**
+     * Schedules an asynchronous rule run against a given request, to complete within a timeout
+     *
+     * @param request the RuleRequest
+     * @param timeout the time allowed for the run, from submission
+     * @return an ID used to track the run
+     * @throws RuleRejectedException if the queue for the request class is full
+     * @see #submit(RuleRequest, Duration)
+     */
+    long schedule(RuleRequest request, Duration timeout);
+
     /**
      * Executes a synchronous rule run against a given request
      *
@@ -33,6 +59,15 @@ public interface RuleService {
      */
     <T extends Serializable> T run(RuleRequest request);
 
+    /**
+     * Executes a synchronous rule run against a given request, stopping it once a timeout has passed
+     *
+     * @param request the RuleRequest
+     * @param timeout the time allowed for the run
+     * @return the result of the run, or {@code null} if the run did not complete in time
+     */
+    <T extends Serializable> T run(RuleRequest request, Duration timeout);
+
     /**
      * Returns the result of a rule run
      *
@@ -64,6 +99,22 @@ public interface RuleService {
      */
     void cancel(long ruleId);
 
+    /**
+     * Returns the count of scheduled runs of a request class waiting to start
+     *
+     * @param requestClass the RuleRequest class
+     * @return the count of waiting runs
+     */
+    int getQueueDepth(Class<? extends RuleRequest> requestClass);
+
+    /**
+     * Returns the count of runs of a request class rejected because its queue was full
+     *
+     * @param requestClass the RuleRequest class
+     * @return the count of rejected runs
+     */
+    long getRejectedCount(Class<? extends RuleRequest> requestClass);
+
     /**
      * Retrieves a Collection of known Request classes
      */
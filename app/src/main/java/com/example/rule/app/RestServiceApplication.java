@@ -2,8 +2,10 @@ package com.example.rule.app;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
 
-@SpringBootApplication
+@SpringBootApplication(scanBasePackages = {"com.example.rule.app", "com.example.rules"})
+@EntityScan("com.example.rules.core.domain")
 public class RestServiceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,28 @@
+package com.example.rule.app;
+
+import com.example.rules.core.session.SessionFactoryImpl;
+import org.springframework.boot.actuate.availability.ReadinessStateHealthIndicator;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.AvailabilityState;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.stereotype.Component;
+
+/**
+ * Readiness indicator refusing traffic until the rule sessions are warmed up
+ * <p>Replaces the default readiness indicator, reported through {@code /actuator/health/readiness}.</p>
+ */
+@Component("readinessStateHealthIndicator")
+public class RuleReadinessIndicator extends ReadinessStateHealthIndicator {
+
+    private final SessionFactoryImpl sessionFactory;
+
+    public RuleReadinessIndicator(ApplicationAvailability availability, SessionFactoryImpl sessionFactory) {
+        super(availability);
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    protected AvailabilityState getState(ApplicationAvailability applicationAvailability) {
+        return sessionFactory.isWarm() ? super.getState(applicationAvailability) : ReadinessState.REFUSING_TRAFFIC;
+    }
+}
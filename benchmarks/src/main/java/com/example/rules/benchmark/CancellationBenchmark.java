@@ -0,0 +1,66 @@
+package com.example.rules.benchmark;
+
+import com.example.rules.core.context.RuleContextImpl;
+import com.example.rules.core.context.RunRegistry;
+import com.example.rules.fact.TestRequest;
+import com.example.rules.spi.RuleContext;
+import com.example.rules.spi.session.RuleCancellationEvent;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.SimpleApplicationEventMulticaster;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares cancelling one of many in-flight runs through the run registry, against broadcasting a
+ * RuleCancellationEvent to a listener per run, each comparing run IDs
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CancellationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int runs;
+
+    private RunRegistry registry;
+    private SimpleApplicationEventMulticaster multicaster;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        registry = new RunRegistry();
+        multicaster = new SimpleApplicationEventMulticaster();
+        for (int i = 0; i < runs; ++i) {
+            long runId = i;
+            RuleContext context = new RuleContextImpl(runId, new TestRequest(i));
+            registry.register(runId, context);
+            multicaster.addApplicationListener((ApplicationListener<RuleCancellationEvent>)event -> {
+                if (event.getSessionId() == runId) {
+                    context.stop();
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public boolean registry() {
+        return registry.cancel(nextRunId());
+    }
+
+    @Benchmark
+    public void broadcast() {
+        multicaster.multicastEvent(new RuleCancellationEvent(this, nextRunId()));
+    }
+
+    private long nextRunId() {
+        long runId = next++;
+        if (next == runs) {
+            next = 0;
+        }
+        return runId;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.rules.benchmark;
+
+import com.example.rules.core.drools.DroolsContainer;
+import com.example.rules.core.session.CompoundSession;
+import com.example.rules.fact.TestFact;
+import com.example.rules.fact.TestResult;
+import com.example.rules.spi.session.RuleSession;
+import org.kie.api.KieServices;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the fan-out of a CompoundSession over several {@code test_a} sessions, inserting into and firing all of
+ * them, sequentially or in parallel
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompoundSessionBenchmark {
+
+    private static final int FACT_COUNT = 1000;
+
+    @Param({"1", "2", "4"})
+    private int sessionCount;
+
+    @Param({"false", "true"})
+    private boolean parallel;
+
+    private DroolsContainer container;
+    private ExecutorService executor;
+    private List<TestFact> facts;
+    private RuleSession session;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        container = new DroolsContainer(KieServices.get().getKieClasspathContainer(), sessionCount, 0);
+        executor = parallel ? Executors.newFixedThreadPool(sessionCount) : null;
+        facts = new ArrayList<>(FACT_COUNT);
+        for (int i = 0; i < FACT_COUNT; ++i) {
+            facts.add(new TestFact(i));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        List<RuleSession> sessions = new ArrayList<>(sessionCount);
+        for (int i = 0; i < sessionCount; ++i) {
+            RuleSession s = container.newSession("test_a");
+            s.setGlobal("threshold", FACT_COUNT / 2);
+            // Each sub-session gets its own result, as they may fire concurrently
+            s.setGlobal("res", new TestResult());
+            sessions.add(s);
+        }
+        session = new CompoundSession(sessions, executor);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() {
+        session.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        container.close();
+    }
+
+    @Benchmark
+    public long insertAll() {
+        session.insertAll(facts);
+        return session.getFactCount();
+    }
+
+    @Benchmark
+    public int runRules() {
+        session.insertAll(facts);
+        return session.runRules();
+    }
+}
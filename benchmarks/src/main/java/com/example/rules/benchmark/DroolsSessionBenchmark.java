@@ -0,0 +1,77 @@
+package com.example.rules.benchmark;
+
+import com.example.rules.core.drools.DroolsContainer;
+import com.example.rules.fact.TestFact;
+import com.example.rules.fact.TestResult;
+import com.example.rules.spi.session.RuleSession;
+import org.kie.api.KieServices;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures inserting facts into, retrieving facts from, and firing the rules of a pooled {@code test_a} Drools session
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DroolsSessionBenchmark {
+
+    @Param({"100", "1000"})
+    private int factCount;
+
+    private DroolsContainer container;
+    private List<TestFact> facts;
+    private RuleSession session;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        container = new DroolsContainer(KieServices.get().getKieClasspathContainer(), 4, 0);
+        facts = new ArrayList<>(factCount);
+        for (int i = 0; i < factCount; ++i) {
+            facts.add(new TestFact(i));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        session = container.newSession("test_a");
+        session.setGlobal("threshold", factCount / 2);
+        session.setGlobal("res", new TestResult());
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() {
+        session.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        container.close();
+    }
+
+    @Benchmark
+    public long insert() {
+        for (TestFact fact : facts) {
+            session.insert(fact);
+        }
+        return session.getFactCount();
+    }
+
+    @Benchmark
+    public long getFacts() {
+        session.insertAll(facts);
+        return session.getFacts(TestFact.class).count();
+    }
+
+    @Benchmark
+    public int runRules() {
+        session.insertAll(facts);
+        return session.runRules();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.rules.benchmark;
+
+import com.example.rules.core.config.VirtualThreadTaskExecutor;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a fixed platform thread pool with semaphore-limited virtual threads, running a batch of investigator-like
+ * tasks which block on simulated I/O
+ * <p>The virtual mode requires Java 21, and fails on earlier JVMs.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"platform", "virtual"})
+    private String mode;
+
+    @Param({"1"})
+    private long ioMillis;
+
+    private AsyncTaskExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if ("virtual".equals(mode)) {
+            executor = VirtualThreadTaskExecutor.create("Investigator", 1000);
+            if (executor == null) {
+                throw new IllegalStateException("Virtual threads are not supported by this JVM");
+            }
+        } else {
+            // Matches the default investigator pool
+            ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+            pool.setCorePoolSize(10);
+            pool.setMaxPoolSize(10);
+            pool.setQueueCapacity(BATCH_SIZE);
+            pool.setThreadNamePrefix("Investigator");
+            pool.initialize();
+            executor = pool;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (executor instanceof ThreadPoolTaskExecutor) {
+            ((ThreadPoolTaskExecutor)executor).shutdown();
+        } else if (executor instanceof VirtualThreadTaskExecutor) {
+            ((VirtualThreadTaskExecutor)executor).destroy();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int blockingTasks() throws Exception {
+        List<Future<?>> futures = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; ++i) {
+            futures.add(executor.submit(() -> {
+                try {
+                    Thread.sleep(ioMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return futures.size();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.rules.benchmark;
+
+import com.example.rules.core.drools.DroolsContainer;
+import com.example.rules.core.session.CompoundSession;
+import com.example.rules.fact.TestFact;
+import com.example.rules.spi.session.RuleSession;
+import org.kie.api.KieServices;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares per-fact insertion with bulk insertion into a CompoundSession spanning two Drools sessions
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBenchmark {
+
+    @Param({"1000", "10000"})
+    private int factCount;
+
+    private DroolsContainer container;
+    private List<TestFact> facts;
+    private RuleSession session;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        container = new DroolsContainer(KieServices.get().getKieClasspathContainer(), 4, 0);
+        facts = new ArrayList<>(factCount);
+        for (int i = 0; i < factCount; ++i) {
+            facts.add(new TestFact(i));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        session = new CompoundSession(Arrays.asList(container.newSession("test_a"), container.newSession("test_b")));
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() {
+        session.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        container.close();
+    }
+
+    @Benchmark
+    public long insert() {
+        for (TestFact fact : facts) {
+            session.insert(fact);
+        }
+        return session.getFactCount();
+    }
+
+    @Benchmark
+    public long insertAll() {
+        session.insertAll(facts);
+        return session.getFactCount();
+    }
+}
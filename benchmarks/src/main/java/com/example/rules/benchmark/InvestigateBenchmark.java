@@ -0,0 +1,259 @@
+package com.example.rules.benchmark;
+
+import com.example.rules.api.RuleRequest;
+import com.example.rules.core.context.RuleContextImpl;
+import com.example.rules.core.processor.InvestigatorFactory;
+import com.example.rules.fact.TestFact;
+import com.example.rules.spi.RuleContext;
+import com.example.rules.spi.investigator.Investigator;
+import com.example.rules.spi.session.RuleSession;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Measures RuleContextImpl.investigate over eight investigators arranged in different dependency graphs
+ * <ul>
+ *     <li>{@code flat}: all investigators are independent</li>
+ *     <li>{@code chain}: each investigator depends on the previous one</li>
+ *     <li>{@code diamond}: one root, six investigators depending on it, and one depending on those six</li>
+ * </ul>
+ * <p>Each investigator inserts 100 facts after spending {@code work} tokens of CPU, through the investigator pool
+ * and the queued session used in the service.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvestigateBenchmark {
+
+    private static final int FACT_COUNT = 100;
+    private static final List<Supplier<Node>> NODES = Arrays.asList(N0::new, N1::new, N2::new, N3::new, N4::new, N5::new, N6::new, N7::new);
+
+    @Param({"flat", "chain", "diamond"})
+    private String shape;
+
+    @Param({"0", "10000"})
+    private long work;
+
+    private ThreadPoolTaskExecutor executor;
+    private RuleRequest request;
+    private int[][] dependencies;
+    private InvestigatorFactory factory;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Matches the default investigator pool
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(10);
+        executor.setMaxPoolSize(10);
+        executor.setThreadNamePrefix("Investigator");
+        executor.initialize();
+
+        dependencies = new int[NODES.size()][];
+        switch (shape) {
+            case "chain":
+                request = new ChainRequest();
+                dependencies[0] = new int[0];
+                for (int i = 1; i < dependencies.length; ++i) {
+                    dependencies[i] = new int[]{i - 1};
+                }
+                break;
+            case "diamond":
+                request = new DiamondRequest();
+                dependencies[0] = new int[0];
+                for (int i = 1; i < dependencies.length - 1; ++i) {
+                    dependencies[i] = new int[]{0};
+                }
+                dependencies[dependencies.length - 1] = new int[]{1, 2, 3, 4, 5, 6};
+                break;
+            default:
+                request = new FlatRequest();
+                Arrays.fill(dependencies, new int[0]);
+        }
+
+        factory = new InvestigatorFactory() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <R extends RuleRequest> Collection<Investigator<R, ?>> getInvestigators(RuleContext context) {
+                List<Investigator<R, ?>> investigators = new ArrayList<>(NODES.size());
+                for (int i = 0; i < NODES.size(); ++i) {
+                    Node node = NODES.get(i).get();
+                    node.dependencies = dependencies[i];
+                    node.work = work;
+                    investigators.add((Investigator<R, ?>)(Investigator<?, ?>)node);
+                }
+                return investigators;
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public long investigate() {
+        RuleContextImpl context = new RuleContextImpl(nextId++, request);
+        context.setInvestigatorFactory(factory);
+        context.setExecutor(executor);
+        CountingSession session = new CountingSession();
+        context.investigate(session);
+        return session.count.sum();
+    }
+
+    public abstract static class ShapeRequest implements RuleRequest {
+    }
+
+    // Dependency graphs are cached per request class, so each shape has its own
+    public static class FlatRequest extends ShapeRequest {
+    }
+
+    public static class ChainRequest extends ShapeRequest {
+    }
+
+    public static class DiamondRequest extends ShapeRequest {
+    }
+
+    private abstract static class Node implements Investigator<ShapeRequest, TestFact> {
+
+        private final int index;
+        private int[] dependencies;
+        private long work;
+
+        Node(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void gatherFacts(RuleSession session) {
+            Blackhole.consumeCPU(work);
+            for (int i = 0; i < FACT_COUNT; ++i) {
+                session.insert(new TestFact(index * FACT_COUNT + i));
+            }
+        }
+
+        @Override
+        public boolean dependsOn(Collection<? extends Investigator<?, ?>> investigators) {
+            for (Investigator<?, ?> investigator : investigators) {
+                if (investigator instanceof Node) {
+                    for (int dependency : dependencies) {
+                        if (((Node)investigator).index == dependency) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class N0 extends Node {
+        N0() {
+            super(0);
+        }
+    }
+
+    private static final class N1 extends Node {
+        N1() {
+            super(1);
+        }
+    }
+
+    private static final class N2 extends Node {
+        N2() {
+            super(2);
+        }
+    }
+
+    private static final class N3 extends Node {
+        N3() {
+            super(3);
+        }
+    }
+
+    private static final class N4 extends Node {
+        N4() {
+            super(4);
+        }
+    }
+
+    private static final class N5 extends Node {
+        N5() {
+            super(5);
+        }
+    }
+
+    private static final class N6 extends Node {
+        N6() {
+            super(6);
+        }
+    }
+
+    private static final class N7 extends Node {
+        N7() {
+            super(7);
+        }
+    }
+
+    /**
+     * A session only counting inserted facts, so that the benchmark measures scheduling and ingestion
+     */
+    private static class CountingSession implements RuleSession {
+
+        private final LongAdder count = new LongAdder();
+
+        @Override
+        public <F> void insert(F fact) {
+            count.increment();
+        }
+
+        @Override
+        public <T> Stream<T> getFacts(Class<T> factClass) {
+            return Stream.empty();
+        }
+
+        @Override
+        public Stream<Object[]> query(String queryId, String[] objectNames, Object... arguments) {
+            return Stream.empty();
+        }
+
+        @Override
+        public void setGlobal(String identifier, Object value) {
+        }
+
+        @Override
+        public <T> T getGlobal(String identifier) {
+            return null;
+        }
+
+        @Override
+        public int runRules() {
+            return 0;
+        }
+
+        @Override
+        public void halt() {
+        }
+
+        @Override
+        public int getRuleCount() {
+            return 0;
+        }
+
+        @Override
+        public Map<String, Integer> getRuleHistogram() {
+            return Collections.emptyMap();
+        }
+    }
+}
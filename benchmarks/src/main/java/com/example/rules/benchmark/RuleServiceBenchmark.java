@@ -0,0 +1,99 @@
+package com.example.rules.benchmark;
+
+import com.example.rules.api.RuleRequest;
+import com.example.rules.api.RuleService;
+import com.example.rules.fact.TestFact;
+import com.example.rules.fact.TestResult;
+import com.example.rules.spi.RuleContext;
+import com.example.rules.spi.arbiter.AbstractArbiter;
+import com.example.rules.spi.arbiter.RuleSet;
+import com.example.rules.spi.investigator.AbstractInvestigator;
+import com.example.rules.spi.session.RuleSession;
+import lombok.Getter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.beans.factory.config.ConfigurableBeanFactory.SCOPE_PROTOTYPE;
+
+/**
+ * Measures RuleService.run end to end on the {@code test_a} rule set: logging the run, creating the context, arbiter and
+ * pooled session, gathering facts through an investigator, firing the rules and storing the result
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleServiceBenchmark {
+
+    @Param({"10", "1000"})
+    private int factCount;
+
+    private AnnotationConfigApplicationContext context;
+    private RuleService ruleService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new AnnotationConfigApplicationContext("com.example.rules");
+        ruleService = context.getBean(RuleService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public TestResult run() {
+        return ruleService.run(new BenchmarkRequest(factCount));
+    }
+
+    @Getter
+    public static class BenchmarkRequest implements RuleRequest {
+
+        private final int factCount;
+
+        public BenchmarkRequest(int factCount) {
+            this.factCount = factCount;
+        }
+    }
+
+    @RuleSet("test_a")
+    @Component
+    @org.springframework.context.annotation.Scope(SCOPE_PROTOTYPE)
+    public static class BenchmarkArbiter extends AbstractArbiter<BenchmarkRequest, TestResult> {
+
+        public BenchmarkArbiter(RuleContext context) {
+            super(context);
+        }
+
+        @Override
+        protected void beforeRules(RuleSession session) {
+            session.setGlobal("res", getResult());
+            BenchmarkRequest request = getContext().getRequest();
+            session.setGlobal("threshold", request.getFactCount() / 2);
+        }
+    }
+
+    @Component
+    @org.springframework.context.annotation.Scope(SCOPE_PROTOTYPE)
+    public static class BenchmarkInvestigator extends AbstractInvestigator<BenchmarkRequest, TestFact> {
+
+        public BenchmarkInvestigator(RuleContext context) {
+            super(context);
+        }
+
+        @Override
+        protected void doGather() {
+            BenchmarkRequest request = getContext().getRequest();
+            int factCount = request.getFactCount();
+            for (int i = 0; i < factCount; ++i) {
+                insert(new TestFact(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.rules.benchmark;
+
+import com.example.rules.core.repository.RuleSerializer;
+import com.example.rules.core.repository.codec.KryoCodec;
+import com.example.rules.core.repository.codec.RuleCodec;
+import com.example.rules.core.repository.codec.XStreamCodec;
+import com.example.rules.fact.TestResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the XStream and Kryo codecs when serializing and deserializing a result through RuleSerializer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({"xstream", "kryo"})
+    private String codecName;
+
+    @Param({"10", "1000"})
+    private int messageCount;
+
+    private RuleCodec previous;
+    private TestResult result;
+    private byte[] serialized;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        previous = RuleSerializer.getCodec();
+        RuleSerializer.setCodec("kryo".equals(codecName) ? new KryoCodec() : new XStreamCodec());
+
+        result = new TestResult();
+        for (int i = 0; i < messageCount; ++i) {
+            result.add("Fact " + i + " exceeds threshold");
+        }
+        serialized = RuleSerializer.serialize(result);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RuleSerializer.setCodec(previous);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return RuleSerializer.serialize(result);
+    }
+
+    @Benchmark
+    public TestResult deserialize() {
+        return RuleSerializer.deserialize(serialized);
+    }
+}
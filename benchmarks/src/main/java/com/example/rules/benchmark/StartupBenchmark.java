@@ -0,0 +1,83 @@
+package com.example.rules.benchmark;
+
+import com.example.rules.fact.TestFact;
+import com.example.rules.fact.TestResult;
+import org.kie.api.KieServices;
+import org.kie.api.builder.KieBuilder;
+import org.kie.api.builder.KieFileSystem;
+import org.kie.api.builder.Message;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.builder.model.KieModuleModel;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cold start of the {@code test_a} rules in a fresh JVM, up to its KieBase being built and up to a
+ * first request being fired
+ * <ul>
+ *     <li>{@code executable}: the classpath kjar, loading the executable model generated at build time</li>
+ *     <li>{@code drl}: the same DRL compiled at startup, as the classpath container did before</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+
+    private static final int FACT_COUNT = 100;
+
+    @Param({"drl", "executable"})
+    private String model;
+
+    @Benchmark
+    public Object startup() {
+        return newContainer().getKieBase("testa");
+    }
+
+    @Benchmark
+    public TestResult firstRequest() {
+        KieSession session = newContainer().newKieSession("test_a");
+        try {
+            TestResult result = new TestResult();
+            session.setGlobal("threshold", FACT_COUNT / 2);
+            session.setGlobal("res", result);
+            for (int i = 0; i < FACT_COUNT; ++i) {
+                session.insert(new TestFact(i));
+            }
+            session.fireAllRules();
+            return result;
+        } finally {
+            session.dispose();
+        }
+    }
+
+    private KieContainer newContainer() {
+        KieServices services = KieServices.get();
+        if ("executable".equals(model)) {
+            return services.newKieClasspathContainer();
+        }
+
+        ReleaseId releaseId = services.newReleaseId("com.example", "rule-test-drl", "1.0.0");
+        KieModuleModel module = services.newKieModuleModel();
+        module.newKieBaseModel("testa")
+                .addPackage("com.example.rules.testa")
+                .newKieSessionModel("test_a");
+
+        KieFileSystem files = services.newKieFileSystem()
+                .generateAndWritePomXML(releaseId)
+                .writeKModuleXML(module.toXML())
+                .write("src/main/resources/com/example/rules/testa/test_a.drl",
+                        services.getResources().newClassPathResource("com/example/rules/testa/test_a.drl"));
+        KieBuilder builder = services.newKieBuilder(files).buildAll();
+        if (builder.getResults().hasMessages(Message.Level.ERROR)) {
+            throw new IllegalStateException("Failed to compile test_a: " + builder.getResults().getMessages());
+        }
+        return services.newKieContainer(releaseId);
+    }
+}
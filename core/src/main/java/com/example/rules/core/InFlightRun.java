@@ -0,0 +1,156 @@
+package com.example.rules.core;
+
+import java.io.Serializable;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * A rule run shared by all callers that submitted an identical request while it was in progress
+ * <p>Each caller holds a reference on the run. Cancelling releases that reference, and the run itself is only
+ * cancelled once the last reference has been released.</p>
+ */
+class InFlightRun {
+
+    private final Object key;
+    private final CompletableFuture<Long> runId = new CompletableFuture<>();
+    private final CompletableFuture<Serializable> result = new CompletableFuture<>();
+    private final Consumer<InFlightRun> canceller;
+
+    private int references = 1;
+    private volatile Future<?> task;
+
+    /**
+     * @param key       the key identifying identical requests
+     * @param canceller cancels the run once no caller references it
+     */
+    InFlightRun(Object key, Consumer<InFlightRun> canceller) {
+        this.key = key;
+        this.canceller = canceller;
+    }
+
+    Object getKey() {
+        return key;
+    }
+
+    /**
+     * Adds a reference from another caller
+     *
+     * @return false if the run is complete or cancelled, and can no longer be joined
+     */
+    synchronized boolean attach() {
+        if (references == 0 || result.isDone()) {
+            return false;
+        }
+        ++references;
+        return true;
+    }
+
+    /**
+     * Releases a reference, cancelling the run when it was the last one
+     *
+     * @return true if the run was cancelled
+     */
+    boolean release() {
+        synchronized (this) {
+            if (references == 0 || --references > 0 || result.isDone()) {
+                return false;
+            }
+        }
+        canceller.accept(this);
+        Future<?> t = task;
+        if (t != null) {
+            t.cancel(true);
+        }
+        result.completeExceptionally(new CancellationException("Rule run cancelled"));
+        return true;
+    }
+
+    void started(long id, Future<?> task) {
+        runId.complete(id);
+        this.task = task;
+    }
+
+    void complete(Serializable value) {
+        result.complete(value);
+    }
+
+    void fail(Throwable t) {
+        runId.completeExceptionally(t);
+        result.completeExceptionally(t);
+    }
+
+    /**
+     * Waits for the ID of the run, which is allocated by the caller that started it
+     */
+    long getRunId() {
+        try {
+            return runId.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause() : e;
+        }
+    }
+
+    /**
+     * Waits for the result of the run
+     *
+     * @return the result, or null if the run failed or was cancelled
+     */
+    @SuppressWarnings("unchecked")
+    <T extends Serializable> T join() {
+        try {
+            return (T)result.join();
+        } catch (CancellationException | CompletionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a Future holding one reference on this run
+     */
+    Future<Serializable> newFuture() {
+        return new Reference();
+    }
+
+    private class Reference implements Future<Serializable> {
+
+        private boolean cancelled;
+
+        @Override
+        public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+            if (cancelled || result.isDone()) {
+                return false;
+            }
+            cancelled = true;
+            release();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return isCancelled() || result.isDone();
+        }
+
+        @Override
+        public Serializable get() throws InterruptedException, ExecutionException {
+            checkCancelled();
+            return result.get();
+        }
+
+        @Override
+        public Serializable get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            checkCancelled();
+            return result.get(timeout, unit);
+        }
+
+        private void checkCancelled() {
+            if (isCancelled()) {
+                throw new CancellationException("Rule run cancelled");
+            }
+        }
+    }
+}
@@ -1,26 +1,41 @@
 package com.example.rules.core;
 
 import com.example.rules.api.*;
+import com.example.rules.core.admission.AdmissionController;
+import com.example.rules.core.config.RequestPriorities;
+import com.example.rules.core.config.TaskPriority;
 import com.example.rules.core.processor.ArbiterFactory;
 import com.example.rules.core.context.RuleContextFactory;
+import com.example.rules.core.context.RunRegistry;
 import com.example.rules.core.domain.RuleLog;
+import com.example.rules.core.metrics.RuleMetrics;
+import com.example.rules.core.repository.RuleLogJournal;
 import com.example.rules.core.repository.RuleLogRepository;
-import com.example.rules.core.repository.RuleSerializer;
 import com.example.rules.spi.RuleContext;
 import com.example.rules.spi.arbiter.Arbiter;
 import com.example.rules.spi.session.RuleCancellationEvent;
+import com.example.rules.spi.session.SessionFactory;
 import com.example.rules.spi.store.ResultStore;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
 import java.io.Serializable;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
@@ -32,20 +47,45 @@ public class RuleServiceImpl implements RuleService {
     private final ArbiterFactory arbiterFactory;
     private final RuleContextFactory ruleContextFactory;
     private final ApplicationEventPublisher eventPublisher;
+    private final SessionFactory sessionFactory;
+    private final RunRegistry runRegistry;
     private final AtomicLong idGenerator = new AtomicLong(1);
+    private final Map<Object, InFlightRun> inFlight = new ConcurrentHashMap<>();
+    private final Map<Long, InFlightRun> inFlightById = new ConcurrentHashMap<>();
 
     private RuleLogRepository logRepository;
+    private RuleLogJournal logJournal;
     private ResultStore resultStore;
     private AsyncTaskExecutor arbiterExecutor;
+    private TaskScheduler deadlineScheduler;
+    private AdmissionController admissionController;
+    private RequestPriorities requestPriorities;
+    private RuleMetrics metrics;
+    private boolean reuseResults;
+    private boolean coalesceRequests;
 
     @Autowired(required = false)
     public void setLogRepository(RuleLogRepository logRepository) {
         this.logRepository = logRepository;
     }
 
+    /**
+     * Sets the journal used to write RuleLog state transitions off the request thread
+     */
+    @Autowired(required = false)
+    public void setLogJournal(RuleLogJournal logJournal) {
+        this.logJournal = logJournal;
+    }
+
+    /**
+     * Sets the store of run results
+     * <p>Without a rule log, run IDs are only unique within the JVM, so they start above those of any result the
+     * store kept from a previous run of the service.</p>
+     */
     @Autowired(required = false)
     public void setResultStore(ResultStore resultStore) {
         this.resultStore = resultStore;
+        idGenerator.accumulateAndGet(resultStore.getLastRunId() + 1, Math::max);
     }
 
     @Autowired
@@ -54,56 +94,434 @@ public class RuleServiceImpl implements RuleService {
         this.arbiterExecutor = arbiterExecutor;
     }
 
+    /**
+     * Sets the scheduler expiring runs submitted with a timeout
+     */
+    @Autowired
+    @Qualifier("deadlineScheduler")
+    public void setDeadlineScheduler(TaskScheduler deadlineScheduler) {
+        this.deadlineScheduler = deadlineScheduler;
+    }
+
+    /**
+     * Sets the admission control bounding the count of runs waiting for an arbiter thread
+     */
+    @Autowired(required = false)
+    public void setAdmissionController(AdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
+    /**
+     * Sets the resolver of request priorities, runs are scheduled with NORMAL priority without it
+     */
+    @Autowired(required = false)
+    public void setRequestPriorities(RequestPriorities requestPriorities) {
+        this.requestPriorities = requestPriorities;
+    }
+
+    @Autowired(required = false)
+    public void setMetrics(RuleMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Enables returning the stored result of a previous successful run of an identical request, processed by the same
+     * rules release, instead of running the rules again
+     * <p>Requires both the rule log and a ResultStore</p>
+     */
+    @Value("${rule.result.reuse:false}")
+    public void setReuseResults(boolean reuseResults) {
+        this.reuseResults = reuseResults;
+    }
+
+    /**
+     * Enables sharing a single run between identical requests submitted while it is in progress
+     * <p>Requests are identified by fingerprint when the rule log is enabled, otherwise by equality.</p>
+     */
+    @Value("${rule.request.coalesce:false}")
+    public void setCoalesceRequests(boolean coalesceRequests) {
+        this.coalesceRequests = coalesceRequests;
+    }
+
     @Override
     public Future<Serializable> submit(RuleRequest request) {
-        long runId = onStart(request);
-        return arbiterExecutor.submit(() -> run(request, runId));
+        SerializedRequest serialized = serialize(request);
+        long previousId = findPreviousRun(serialized);
+        Serializable previous = previousId >= 0 ? resultStore.load(previousId) : null;
+        if (previous != null) {
+            return CompletableFuture.completedFuture(previous);
+        }
+        if (coalesceRequests) {
+            return coalesce(request, serialized, false).newFuture();
+        }
+        AdmissionController.Ticket ticket = admit(request);
+        long runId = onStart(request, serialized, ticket);
+        return queue(request, ticket, runId, () -> run(request, runId), null);
     }
 
     @Override
     public long schedule(RuleRequest request) {
-        long runId = onStart(request);
-        arbiterExecutor.submit(() -> run(request, runId));
+        SerializedRequest serialized = serialize(request);
+        long previousId = findPreviousRun(serialized);
+        if (previousId >= 0) {
+            return previousId;
+        }
+        if (coalesceRequests) {
+            return coalesce(request, serialized, false).getRunId();
+        }
+        AdmissionController.Ticket ticket = admit(request);
+        long runId = onStart(request, serialized, ticket);
+        queue(request, ticket, runId, () -> run(request, runId), null);
         return runId;
     }
 
     @Override
     public <T extends Serializable> T run(RuleRequest request) {
-        long runId = onStart(request);
+        SerializedRequest serialized = serialize(request);
+        long previousId = findPreviousRun(serialized);
+        T previous = previousId >= 0 ? resultStore.load(previousId) : null;
+        if (previous != null) {
+            return previous;
+        }
+        if (coalesceRequests) {
+            return coalesce(request, serialized, true).join();
+        }
+        AdmissionController.Ticket ticket = admit(request);
+        long runId = onStart(request, serialized, ticket);
+        if (!startInline(ticket, runId)) {
+            return null;
+        }
         return run(request, runId);
     }
 
+    @Override
+    public Future<Serializable> submit(RuleRequest request, Duration timeout) {
+        Instant deadline = Instant.now().plus(timeout);
+        SerializedRequest serialized = serialize(request);
+        long previousId = findPreviousRun(serialized);
+        Serializable previous = previousId >= 0 ? resultStore.load(previousId) : null;
+        if (previous != null) {
+            return CompletableFuture.completedFuture(previous);
+        }
+        return queue(request, serialized, deadline).getFuture();
+    }
+
+    @Override
+    public long schedule(RuleRequest request, Duration timeout) {
+        Instant deadline = Instant.now().plus(timeout);
+        SerializedRequest serialized = serialize(request);
+        long previousId = findPreviousRun(serialized);
+        if (previousId >= 0) {
+            return previousId;
+        }
+        return queue(request, serialized, deadline).getRunId();
+    }
+
+    @Override
+    public <T extends Serializable> T run(RuleRequest request, Duration timeout) {
+        Instant deadline = Instant.now().plus(timeout);
+        SerializedRequest serialized = serialize(request);
+        long previousId = findPreviousRun(serialized);
+        T previous = previousId >= 0 ? resultStore.load(previousId) : null;
+        if (previous != null) {
+            return previous;
+        }
+        AdmissionController.Ticket ticket = admit(request);
+        RunDeadline runDeadline = new RunDeadline(onStart(request, serialized, ticket), deadline);
+        if (!startInline(ticket, runDeadline.getRunId())) {
+            return null;
+        }
+        startTimer(runDeadline);
+        return run(request, runDeadline);
+    }
+
+    /**
+     * Queues a new run which must complete by a deadline
+     * <p>Runs with a deadline are never coalesced, so that the deadline of one caller cannot cut short the run
+     * of another.</p>
+     */
+    private RunDeadline queue(RuleRequest request, SerializedRequest serialized, Instant deadline) {
+        AdmissionController.Ticket ticket = admit(request);
+        long runId = onStart(request, serialized, ticket);
+        RunDeadline runDeadline = new RunDeadline(runId, deadline);
+        runDeadline.queued(queue(request, ticket, runId, () -> run(request, runDeadline), runDeadline::finish), ticket);
+        startTimer(runDeadline);
+        return runDeadline;
+    }
+
+    private void startTimer(RunDeadline runDeadline) {
+        runDeadline.timer(deadlineScheduler.schedule(() -> onDeadline(runDeadline), runDeadline.getDeadline()));
+    }
+
+    /**
+     * Expires a run once its deadline has passed, a running run records the timeout itself once stopped
+     */
+    private void onDeadline(RunDeadline runDeadline) {
+        if (runDeadline.expire() == RunDeadline.State.WAITING) {
+            onTimeout(runDeadline.getRunId());
+        }
+    }
+
+    /**
+     * Joins the in-flight run of an identical request, or starts a new run if there is none
+     *
+     * @param request     the RuleRequest
+     * @param serialized  the serialized request, if the rule log is enabled
+     * @param inline      whether a new run executes on the calling thread
+     * @return the shared run, referenced on behalf of the caller
+     */
+    private InFlightRun coalesce(RuleRequest request, SerializedRequest serialized, boolean inline) {
+        Object key = serialized != null ? serialized.getFingerprint() : request;
+        InFlightRun created = new InFlightRun(key, this::onCancelled);
+        InFlightRun flight = inFlight.compute(key, (k, existing) -> existing != null && existing.attach() ? existing : created);
+        if (flight != created) {
+            return flight;
+        }
+
+        long runId;
+        AdmissionController.Ticket ticket = null;
+        try {
+            ticket = admit(request);
+            runId = onStart(request, serialized, ticket);
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.fail(e);
+            throw e;
+        }
+
+        inFlightById.put(runId, flight);
+        if (inline) {
+            flight.started(runId, null);
+            if (startInline(ticket, runId)) {
+                runShared(flight, request, runId);
+            } else {
+                onShed(flight, runId);
+            }
+        } else {
+            try {
+                flight.started(runId, queue(request, ticket, runId, () -> {
+                    runShared(flight, request, runId);
+                    return null;
+                }, () -> onShed(flight, runId)));
+            } catch (RuntimeException e) {
+                inFlight.remove(key, flight);
+                inFlightById.remove(runId, flight);
+                flight.fail(e);
+                throw e;
+            }
+        }
+        return flight;
+    }
+
+    /**
+     * Admits a request to the arbiter queue, before anything is logged for it
+     *
+     * @return the admission ticket, or null without admission control
+     * @throws RuleRejectedException if the queue for the request class is full
+     */
+    private AdmissionController.Ticket admit(RuleRequest request) {
+        return admissionController != null ? admissionController.admit(request.getClass()) : null;
+    }
+
+    /**
+     * Leaves the admission queue for a run executing on the calling thread
+     * <p>Such runs are admitted like queued ones, so that a full queue rejects or holds back their callers too,
+     * but start as soon as they are admitted.</p>
+     *
+     * @param ticket the admission ticket of the run, may be null
+     * @param runId  the run ID
+     * @return false if the run was shed from the queue, and must not run
+     */
+    private boolean startInline(AdmissionController.Ticket ticket, long runId) {
+        if (ticket == null || ticket.start()) {
+            return true;
+        }
+        onShed(runId);
+        return false;
+    }
+
+    /**
+     * Queues a run on the arbiter executor, with the priority of its request
+     *
+     * @param request     the RuleRequest
+     * @param ticket      the admission ticket of the run, may be null
+     * @param runId       the run ID
+     * @param task        the run
+     * @param shedHandler called if the run is shed from the queue before starting, may be null
+     * @return the Future of the run
+     */
+    private Future<Serializable> queue(RuleRequest request, AdmissionController.Ticket ticket, long runId, Callable<Serializable> task,
+                                      Runnable shedHandler) {
+        Future<Serializable> future;
+        try {
+            future = TaskPriority.callWith(getPriority(request),
+                    () -> arbiterExecutor.submit(() -> ticket == null || ticket.start() ? task.call() : null));
+        } catch (RuntimeException e) {
+            if (ticket != null) {
+                ticket.cancel();
+            }
+            onFailure(runId);
+            throw e;
+        }
+        if (ticket != null) {
+            ticket.onShed(() -> {
+                future.cancel(false);
+                onShed(runId);
+                if (shedHandler != null) {
+                    shedHandler.run();
+                }
+            });
+        }
+        return future;
+    }
+
+    private void runShared(InFlightRun flight, RuleRequest request, long runId) {
+        try {
+            flight.complete(run(request, runId));
+        } finally {
+            inFlight.remove(flight.getKey(), flight);
+            inFlightById.remove(runId, flight);
+        }
+    }
+
+    /**
+     * Releases the callers of a shared run shed from the queue
+     */
+    private void onShed(InFlightRun flight, long runId) {
+        inFlight.remove(flight.getKey(), flight);
+        inFlightById.remove(runId, flight);
+        flight.fail(new CancellationException("Rule run shed from the queue"));
+    }
+
+    /**
+     * Cancels a shared run once its last reference has been released
+     */
+    private void onCancelled(InFlightRun flight) {
+        long runId = flight.getRunId();
+        inFlight.remove(flight.getKey(), flight);
+        inFlightById.remove(runId, flight);
+        cancelRun(runId);
+    }
+
+    private RuleRequest.Priority getPriority(RuleRequest request) {
+        return requestPriorities != null ? requestPriorities.getPriority(request) : RuleRequest.Priority.NORMAL;
+    }
+
+    /**
+     * Runs the rules for a request, investigators spawned by the run inherit the priority of the request
+     */
     private <T extends Serializable> T run(RuleRequest request, long runId) {
+        return TaskPriority.callWith(getPriority(request), () -> process(request, runId, null));
+    }
+
+    /**
+     * Runs the rules for a request with a deadline, unless it has already passed
+     */
+    private <T extends Serializable> T run(RuleRequest request, RunDeadline deadline) {
+        if (!deadline.start()) {
+            return null;
+        }
+        return TaskPriority.callWith(getPriority(request), () -> process(request, deadline.getRunId(), deadline));
+    }
+
+    private <T extends Serializable> T process(RuleRequest request, long runId, RunDeadline deadline) {
         onRunning(runId);
 
         try {
-            RuleContext context = ruleContextFactory.newContext(request, runId);
-            Arbiter<RuleRequest, T> arbiter = arbiterFactory.getArbiter(context);
-            T result = arbiter.processRules();
+            RuleContext context = ruleContextFactory.newContext(request, runId, deadline != null ? deadline.getDeadline() : null);
+            T result;
+            try (RunRegistry.Registration ignored = runRegistry.register(runId, context)) {
+                if (deadline != null) {
+                    deadline.running(context);
+                }
+                Arbiter<RuleRequest, T> arbiter = arbiterFactory.getArbiter(context);
+                long start = System.nanoTime();
+                try {
+                    result = arbiter.processRules();
+                } finally {
+                    if (metrics != null) {
+                        metrics.recordArbiter(arbiter.getClass(), System.nanoTime() - start);
+                    }
+                }
+            }
+            if (deadline != null && !deadline.finish()) {
+                // Halted at the deadline, the result is incomplete
+                onTimeout(runId);
+                return null;
+            }
+            if (context.isStopped()) {
+                // Halted by a cancellation, the result is incomplete and must not be reused
+                onStopped(runId);
+                return null;
+            }
             onSuccess(runId, result);
             return result;
         } catch (Exception e) {
-            onFailure(runId);
+            if (deadline != null && !deadline.finish()) {
+                onTimeout(runId);
+            } else {
+                onFailure(runId);
+            }
             return null;
         }
     }
 
-    private long onStart(RuleRequest request) {
+    /**
+     * Serializes a request and computes its fingerprint, only needed when the rule log is enabled
+     */
+    private SerializedRequest serialize(RuleRequest request) {
+        return logRepository != null ? new SerializedRequest(request) : null;
+    }
+
+    /**
+     * Finds a previous successful run of an identical request whose result can be reused
+     *
+     * @return the ID of the run, or -1 if none exists or result reuse is disabled
+     */
+    private long findPreviousRun(SerializedRequest serialized) {
+        if (!reuseResults || serialized == null || resultStore == null) {
+            return -1;
+        }
+        return logRepository.findMostRecentSuccess(serialized.getFingerprint(), sessionFactory.getRelease())
+                .map(RuleLog::getId)
+                .filter(resultStore::contains)
+                .orElse(-1L);
+    }
+
+    /**
+     * Logs a new run, releasing its admission ticket if that fails
+     */
+    private long onStart(RuleRequest request, SerializedRequest serialized, AdmissionController.Ticket ticket) {
+        try {
+            return onStart(request, serialized);
+        } catch (RuntimeException e) {
+            if (ticket != null) {
+                ticket.cancel();
+            }
+            throw e;
+        }
+    }
+
+    private long onStart(RuleRequest request, SerializedRequest serialized) {
         if (logRepository != null) {
             RuleLog logEntry = new RuleLog();
             logEntry.setState(RuleRequest.State.PENDING);
             logEntry.setRequestClass(request.getClass().getName());
             logEntry.setRequestHash(request.hashCode());
-            logEntry.setRequestData(RuleSerializer.serialize(request));
+            logEntry.setRequestFingerprint(serialized.getFingerprint());
+            logEntry.setRulesRelease(sessionFactory.getRelease());
+            logEntry.setRequestData(serialized.getData());
             logEntry.setRequestDescription(request.toString());
-            return logRepository.save(logEntry).getId();
+            return logJournal != null ? logJournal.start(logEntry) : logRepository.save(logEntry).getId();
         } else {
             return idGenerator.getAndIncrement();
         }
     }
 
     private void onRunning(long runId) {
-        if (logRepository != null) {
+        if (logJournal != null) {
+            logJournal.update(runId, RuleRequest.State.RUNNING, null, null, null);
+        } else if (logRepository != null) {
             logRepository.findById(runId).ifPresent(log -> {
                 log.setUpdateTime(LocalDateTime.now());
                 log.setState(RuleRequest.State.RUNNING);
@@ -113,7 +531,10 @@ public class RuleServiceImpl implements RuleService {
     }
 
     private void onSuccess(long runId, Serializable result) {
-        if (logRepository != null) {
+        recordRun(RuleRequest.State.SUCCESS);
+        if (logJournal != null) {
+            logJournal.update(runId, RuleRequest.State.SUCCESS, result.getClass().getName(), result.toString(), null);
+        } else if (logRepository != null) {
             logRepository.findById(runId).ifPresent(log -> {
                 log.setUpdateTime(LocalDateTime.now());
                 log.setState(RuleRequest.State.SUCCESS);
@@ -128,7 +549,10 @@ public class RuleServiceImpl implements RuleService {
     }
 
     private void onFailure(long runId) {
-        if (logRepository != null) {
+        recordRun(RuleRequest.State.FAILURE);
+        if (logJournal != null) {
+            logJournal.update(runId, RuleRequest.State.FAILURE, null, null, null);
+        } else if (logRepository != null) {
             logRepository.findById(runId).ifPresent(log -> {
                 log.setUpdateTime(LocalDateTime.now());
                 log.setState(RuleRequest.State.FAILURE);
@@ -137,6 +561,48 @@ public class RuleServiceImpl implements RuleService {
         }
     }
 
+    private void onShed(long runId) {
+        onCancelled(runId, "Shed from a full queue");
+    }
+
+    private void onStopped(long runId) {
+        onCancelled(runId, "Cancelled while running");
+    }
+
+    private void onCancelled(long runId, String message) {
+        recordRun(RuleRequest.State.CANCELED);
+        if (logJournal != null) {
+            logJournal.update(runId, RuleRequest.State.CANCELED, null, null, message);
+        } else if (logRepository != null) {
+            logRepository.findById(runId).ifPresent(log -> {
+                log.setUpdateTime(LocalDateTime.now());
+                log.setState(RuleRequest.State.CANCELED);
+                log.setMessage(message);
+                logRepository.save(log);
+            });
+        }
+    }
+
+    private void onTimeout(long runId) {
+        recordRun(RuleRequest.State.TIMEOUT);
+        if (logJournal != null) {
+            logJournal.update(runId, RuleRequest.State.TIMEOUT, null, null, "Deadline exceeded");
+        } else if (logRepository != null) {
+            logRepository.findById(runId).ifPresent(log -> {
+                log.setUpdateTime(LocalDateTime.now());
+                log.setState(RuleRequest.State.TIMEOUT);
+                log.setMessage("Deadline exceeded");
+                logRepository.save(log);
+            });
+        }
+    }
+
+    private void recordRun(RuleRequest.State state) {
+        if (metrics != null) {
+            metrics.recordRun(state);
+        }
+    }
+
     @Override
     public <T extends Serializable> T getResult(long ruleId) {
         return resultStore != null ? resultStore.load(ruleId) : null;
@@ -153,6 +619,16 @@ public class RuleServiceImpl implements RuleService {
         }
     }
 
+    @Override
+    public int getQueueDepth(Class<? extends RuleRequest> requestClass) {
+        return admissionController != null ? admissionController.getQueueDepth(requestClass) : 0;
+    }
+
+    @Override
+    public long getRejectedCount(Class<? extends RuleRequest> requestClass) {
+        return admissionController != null ? admissionController.getRejectedCount(requestClass) : 0;
+    }
+
     @Override
     public Collection<Class<? extends RuleRequest>> getKnownRequests() {
         return new ArrayList<>(arbiterFactory.getKnownRequests());
@@ -165,7 +641,10 @@ public class RuleServiceImpl implements RuleService {
 
     @Override
     public RuleRequest.State getState(long ruleId) {
-        if (logRepository != null) {
+        RuleRequest.State pending = logJournal != null ? logJournal.getPendingState(ruleId) : null;
+        if (pending != null) {
+            return pending;
+        } else if (logRepository != null) {
             return logRepository.findById(ruleId).map(RuleLog::getState).orElse(null);
         } else {
             return null;
@@ -174,6 +653,20 @@ public class RuleServiceImpl implements RuleService {
 
     @Override
     public void cancel(long ruleId) {
+        InFlightRun flight = inFlightById.get(ruleId);
+        if (flight != null) {
+            // Shared runs are only cancelled when no other caller is waiting on them
+            flight.release();
+        } else {
+            cancelRun(ruleId);
+        }
+    }
+
+    /**
+     * Stops a live run through the registry, then notifies observers of the cancellation
+     */
+    private void cancelRun(long ruleId) {
+        runRegistry.cancel(ruleId);
         if (eventPublisher != null) {
             eventPublisher.publishEvent(new RuleCancellationEvent(this, ruleId));
         }
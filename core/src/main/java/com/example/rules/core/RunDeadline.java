@@ -0,0 +1,134 @@
+package com.example.rules.core;
+
+import com.example.rules.core.admission.AdmissionController;
+import com.example.rules.spi.RuleContext;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The deadline of a single run
+ * <p>A run either finishes before its deadline, or expires exactly once: while waiting in the queue, in which case
+ * it never starts, or while running, in which case it is stopped.</p>
+ */
+class RunDeadline {
+
+    enum State {WAITING, RUNNING, FINISHED, EXPIRED}
+
+    @Getter private final long runId;
+    @Getter private final Instant deadline;
+    private final AtomicReference<State> state = new AtomicReference<>(State.WAITING);
+
+    @Getter private volatile Future<Serializable> future;
+    private volatile AdmissionController.Ticket ticket;
+    private volatile ScheduledFuture<?> timer;
+    private volatile RuleContext context;
+
+    RunDeadline(long runId, Instant deadline) {
+        this.runId = runId;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Records the queued task of the run, cancelled if the run expires before starting
+     *
+     * @param future the Future of the queued task
+     * @param ticket the admission ticket of the run, may be null
+     */
+    void queued(Future<Serializable> future, AdmissionController.Ticket ticket) {
+        this.future = future;
+        this.ticket = ticket;
+    }
+
+    /**
+     * Records the timer expiring the run, cancelled as the run finishes
+     */
+    void timer(ScheduledFuture<?> timer) {
+        this.timer = timer;
+        if (state.get() == State.FINISHED) {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * Marks the run as started
+     *
+     * @return false if the run expired in the queue, and must not run
+     */
+    boolean start() {
+        return state.compareAndSet(State.WAITING, State.RUNNING);
+    }
+
+    /**
+     * Records the context of the started run, stopped if the run expires
+     * <p>The context is stopped immediately if the run expired while it was being created.</p>
+     */
+    void running(RuleContext context) {
+        this.context = context;
+        if (isExpired()) {
+            context.stop();
+        }
+    }
+
+    /**
+     * Marks the run as finished, and stops its timer
+     *
+     * @return false if the run expired before finishing
+     */
+    boolean finish() {
+        if (!state.compareAndSet(State.RUNNING, State.FINISHED)) {
+            // Shed from the queue before starting
+            state.compareAndSet(State.WAITING, State.FINISHED);
+        }
+        ScheduledFuture<?> t = timer;
+        if (t != null) {
+            t.cancel(false);
+        }
+        return state.get() != State.EXPIRED;
+    }
+
+    /**
+     * Expires the run, if it has not finished yet
+     * <p>A run expiring in the queue is cancelled along with its admission ticket, a running one is stopped.</p>
+     *
+     * @return the state the run expired in, WAITING or RUNNING, or null if it had already finished
+     */
+    State expire() {
+        while (true) {
+            State current = state.get();
+            if (current == State.FINISHED || current == State.EXPIRED) {
+                return null;
+            }
+            if (state.compareAndSet(current, State.EXPIRED)) {
+                if (current == State.WAITING) {
+                    cancelQueued();
+                } else {
+                    RuleContext c = context;
+                    if (c != null) {
+                        c.stop();
+                    }
+                }
+                return current;
+            }
+        }
+    }
+
+    boolean isExpired() {
+        return state.get() == State.EXPIRED;
+    }
+
+    private void cancelQueued() {
+        Future<?> f = future;
+        if (f != null) {
+            f.cancel(false);
+        }
+        AdmissionController.Ticket t = ticket;
+        if (t != null) {
+            t.cancel();
+        }
+    }
+}
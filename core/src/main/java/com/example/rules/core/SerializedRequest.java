@@ -0,0 +1,22 @@
+package com.example.rules.core;
+
+import com.example.rules.api.RuleRequest;
+import com.example.rules.core.repository.RuleSerializer;
+import lombok.Getter;
+
+/**
+ * A request serialized for the rule log, along with its fingerprint
+ * <p>The fingerprint is computed from the canonical form of the request rather than the logged blob, so that it
+ * does not depend on the configured codec.</p>
+ */
+@Getter
+class SerializedRequest {
+
+    private final byte[] data;
+    private final String fingerprint;
+
+    SerializedRequest(RuleRequest request) {
+        data = RuleSerializer.serialize(request);
+        fingerprint = RuleSerializer.fingerprint(request);
+    }
+}
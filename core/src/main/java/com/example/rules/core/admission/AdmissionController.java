@@ -0,0 +1,231 @@
+package com.example.rules.core.admission;
+
+import com.example.rules.api.RuleRejectedException;
+import com.example.rules.api.RuleRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the count of runs waiting in the arbiter queue, per request class
+ * <p>A request is admitted before anything is logged for it, and holds a {@link Ticket} until its run starts.
+ * The limit defaults to {@code admission.limit}, and can be set per request class with
+ * {@code admission.limit.<request class name>}. When a queue is full, {@code admission.policy} decides whether
+ * the request is rejected, waits up to {@code admission.block.timeout} ms, or replaces the oldest waiting run.</p>
+ */
+@Slf4j
+@Component
+public class AdmissionController {
+
+    private final Environment environment;
+    private final int defaultLimit;
+    private final AdmissionPolicy policy;
+    private final long blockTimeout;
+    private final Map<Class<? extends RuleRequest>, RequestQueue> queues = new ConcurrentHashMap<>();
+
+    public AdmissionController(Environment environment,
+                               @Value("${admission.limit:100}") int defaultLimit,
+                               @Value("${admission.policy:REJECT}") AdmissionPolicy policy,
+                               @Value("${admission.block.timeout:30000}") long blockTimeout) {
+        this.environment = environment;
+        this.defaultLimit = defaultLimit;
+        this.policy = policy;
+        this.blockTimeout = blockTimeout;
+    }
+
+    /**
+     * Admits a request to the queue of its class
+     *
+     * @param requestClass the class of the request
+     * @return a ticket, to start or cancel once the run is queued
+     * @throws RuleRejectedException if the queue is full
+     */
+    public Ticket admit(Class<? extends RuleRequest> requestClass) {
+        RequestQueue queue = queues.computeIfAbsent(requestClass, this::newQueue);
+        Ticket ticket = new Ticket(queue);
+        if (!queue.acquire()) {
+            queue.rejected.increment();
+            throw new RuleRejectedException(requestClass, queue.waiting.size());
+        }
+        queue.waiting.addLast(ticket);
+        return ticket;
+    }
+
+    private RequestQueue newQueue(Class<? extends RuleRequest> requestClass) {
+        int limit = environment.getProperty("admission.limit." + requestClass.getName(), Integer.class, defaultLimit);
+        return new RequestQueue(limit);
+    }
+
+    /**
+     * Returns the count of runs of a request class waiting to start
+     */
+    public int getQueueDepth(Class<? extends RuleRequest> requestClass) {
+        RequestQueue queue = queues.get(requestClass);
+        return queue != null ? queue.waiting.size() : 0;
+    }
+
+    /**
+     * Returns the count of runs of all request classes waiting to start
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (RequestQueue queue : queues.values()) {
+            depth += queue.waiting.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Returns the count of requests of a class rejected because the queue was full
+     */
+    public long getRejectedCount(Class<? extends RuleRequest> requestClass) {
+        RequestQueue queue = queues.get(requestClass);
+        return queue != null ? queue.rejected.sum() : 0;
+    }
+
+    /**
+     * Returns the count of waiting runs of a request class cancelled to make room for newer requests
+     */
+    public long getShedCount(Class<? extends RuleRequest> requestClass) {
+        RequestQueue queue = queues.get(requestClass);
+        return queue != null ? queue.shed.sum() : 0;
+    }
+
+    /**
+     * Returns the count of waiting runs for each request class admitted so far
+     */
+    public Map<Class<? extends RuleRequest>, Integer> getQueueDepths() {
+        Map<Class<? extends RuleRequest>, Integer> depths = new HashMap<>();
+        queues.forEach((requestClass, queue) -> depths.put(requestClass, queue.waiting.size()));
+        return Collections.unmodifiableMap(depths);
+    }
+
+    private class RequestQueue {
+
+        private final Semaphore slots;
+        private final Deque<Ticket> waiting = new ConcurrentLinkedDeque<>();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+
+        RequestQueue(int limit) {
+            slots = new Semaphore(limit > 0 ? limit : Integer.MAX_VALUE);
+        }
+
+        boolean acquire() {
+            if (slots.tryAcquire()) {
+                return true;
+            }
+            switch (policy) {
+                case BLOCK:
+                    try {
+                        return slots.tryAcquire(blockTimeout, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                case SHED_OLDEST:
+                    Ticket oldest;
+                    while ((oldest = waiting.peekFirst()) != null) {
+                        if (oldest.shed() && slots.tryAcquire()) {
+                            return true;
+                        } else if (slots.tryAcquire()) {
+                            // A run started or was cancelled meanwhile
+                            return true;
+                        }
+                    }
+                    return slots.tryAcquire();
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * The place of a run in the queue of its request class
+     */
+    public static class Ticket {
+
+        private enum State {WAITING, STARTED, SHED, CANCELLED}
+
+        private final RequestQueue queue;
+        private State state = State.WAITING;
+        private Runnable shedHandler;
+
+        private Ticket(RequestQueue queue) {
+            this.queue = queue;
+        }
+
+        /**
+         * Leaves the queue as the run starts
+         *
+         * @return false if the run was shed from the queue, and must not run
+         */
+        public boolean start() {
+            return leave(State.STARTED);
+        }
+
+        /**
+         * Leaves the queue without running, when the run could not be queued
+         */
+        public void cancel() {
+            leave(State.CANCELLED);
+        }
+
+        /**
+         * Sets the handler called if the run is shed from the queue
+         * <p>The handler is called immediately if the run was already shed.</p>
+         */
+        public void onShed(Runnable handler) {
+            boolean alreadyShed;
+            synchronized (this) {
+                shedHandler = handler;
+                alreadyShed = state == State.SHED;
+            }
+            if (alreadyShed) {
+                handler.run();
+            }
+        }
+
+        private boolean shed() {
+            if (!leave(State.SHED)) {
+                return false;
+            }
+            queue.shed.increment();
+            Runnable handler;
+            synchronized (this) {
+                handler = shedHandler;
+            }
+            if (handler != null) {
+                try {
+                    handler.run();
+                } catch (RuntimeException e) {
+                    log.warn("Failed to cancel shed run", e);
+                }
+            }
+            return true;
+        }
+
+        private boolean leave(State next) {
+            synchronized (this) {
+                if (state != State.WAITING) {
+                    return false;
+                }
+                state = next;
+            }
+            queue.waiting.remove(this);
+            queue.slots.release();
+            return true;
+        }
+    }
+}
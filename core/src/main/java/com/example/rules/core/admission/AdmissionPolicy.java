@@ -0,0 +1,22 @@
+package com.example.rules.core.admission;
+
+/**
+ * What happens to a request whose queue is full
+ */
+public enum AdmissionPolicy {
+
+    /**
+     * The request is rejected immediately
+     */
+    REJECT,
+
+    /**
+     * The caller waits for room in the queue, up to a timeout, then the request is rejected
+     */
+    BLOCK,
+
+    /**
+     * The oldest waiting run of the same request class is cancelled to make room
+     */
+    SHED_OLDEST
+}
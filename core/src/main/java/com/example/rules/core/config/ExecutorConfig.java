@@ -1,11 +1,15 @@
 package com.example.rules.core.config;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
+@Slf4j
 @Configuration
 public class ExecutorConfig {
 
@@ -15,12 +19,55 @@ public class ExecutorConfig {
     @Value("${executor.investigator.size.core:10}")
     private int investigatorPoolSize;
 
+    @Value("${executor.rules.size.core:4}")
+    private int rulePoolSize;
+
+    /**
+     * Bounds the arbiter queue as a whole, on top of the per request class bounds of admission control
+     */
+    @Value("${executor.arbiter.queue.capacity:100}")
+    private int arbiterQueueCapacity;
+
+    /**
+     * Whether the investigator pool, and optionally the arbiter pool, run on virtual threads ({@code virtual})
+     * or on fixed pools of platform threads ({@code platform})
+     */
+    @Value("${executor.mode:platform}")
+    private String executorMode;
+
+    @Value("${executor.arbiter.virtual:false}")
+    private boolean virtualArbiters;
+
+    @Value("${executor.arbiter.virtual.limit:100}")
+    private int arbiterLimit;
+
+    @Value("${executor.investigator.virtual.limit:1000}")
+    private int investigatorLimit;
+
+    /**
+     * Whether the arbiter and investigator pools order waiting tasks by request priority
+     */
+    @Value("${executor.priority.enabled:false}")
+    private boolean priorityEnabled;
+
+    @Value("${executor.priority.aging:1000}")
+    private long priorityAging;
+
     @Bean("arbiterPool")
     public AsyncTaskExecutor arbiterExecutor() {
+        if (virtualArbiters) {
+            AsyncTaskExecutor virtual = virtualExecutor("Arbiter", arbiterLimit);
+            if (virtual != null) {
+                return virtual;
+            }
+        }
+        if (priorityEnabled) {
+            return new PriorityTaskExecutor("Arbiter", arbiterPoolSize, priorityAging);
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(arbiterPoolSize);
         executor.setMaxPoolSize(arbiterPoolSize);
-        executor.setQueueCapacity(100);
+        executor.setQueueCapacity(arbiterQueueCapacity);
         executor.setThreadNamePrefix("Arbiter");
         executor.setWaitForTasksToCompleteOnShutdown(false);
         return executor;
@@ -28,6 +75,13 @@ public class ExecutorConfig {
 
     @Bean("investigatorPool")
     public AsyncTaskExecutor investigatorExecutor() {
+        AsyncTaskExecutor virtual = virtualExecutor("Investigator", investigatorLimit);
+        if (virtual != null) {
+            return virtual;
+        }
+        if (priorityEnabled) {
+            return new PriorityTaskExecutor("Investigator", investigatorPoolSize, priorityAging);
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(investigatorPoolSize);
         executor.setMaxPoolSize(investigatorPoolSize);
@@ -36,4 +90,54 @@ public class ExecutorConfig {
         executor.setWaitForTasksToCompleteOnShutdown(false);
         return executor;
     }
+
+    /**
+     * Creates a virtual thread executor if enabled, falling back to platform threads on JVMs without virtual threads
+     * <p>Virtual thread executors give each task its own thread instead of queueing it, so they do not order tasks
+     * by request priority.</p>
+     */
+    private AsyncTaskExecutor virtualExecutor(String name, int limit) {
+        if (!"virtual".equalsIgnoreCase(executorMode)) {
+            return null;
+        }
+        AsyncTaskExecutor executor = VirtualThreadTaskExecutor.create(name, limit);
+        if (executor == null) {
+            log.warn("Virtual threads are not supported by this JVM, " + name + " tasks run on platform threads");
+        } else {
+            log.info(name + " tasks run on virtual threads, limited to " + limit + " concurrent tasks");
+            if (priorityEnabled) {
+                log.warn("executor.priority.enabled is ignored for " + name + " tasks, which run on virtual threads");
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Executor firing independent rule sessions of a request in parallel
+     */
+    @Bean("rulePool")
+    @ConditionalOnProperty("executor.rules.parallel")
+    public AsyncTaskExecutor ruleExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(rulePoolSize);
+        executor.setMaxPoolSize(rulePoolSize);
+        executor.setQueueCapacity(arbiterPoolSize * 10);
+        executor.setThreadNamePrefix("Rules");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+
+    /**
+     * Scheduler expiring runs submitted with a timeout
+     * <p>Cancelled timers are removed from its queue at once, as most runs finish well before their deadline.</p>
+     */
+    @Bean("deadlineScheduler")
+    public ThreadPoolTaskScheduler deadlineScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.setThreadNamePrefix("Deadline");
+        scheduler.setWaitForTasksToCompleteOnShutdown(false);
+        return scheduler;
+    }
 }
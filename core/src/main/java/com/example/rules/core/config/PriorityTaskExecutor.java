@@ -0,0 +1,152 @@
+package com.example.rules.core.config;
+
+import com.example.rules.api.RuleRequest;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Comparator;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An AsyncTaskExecutor backed by a fixed thread pool whose queue is ordered by task priority
+ * <p>Each task takes the {@link TaskPriority} of the submitting thread. Tasks are ranked by submission time, advanced
+ * by one aging interval per priority level, so that a task of lower priority runs ahead of newer tasks of higher
+ * priority once it has waited long enough, and can never starve. Tasks of equal rank run in submission order.</p>
+ */
+public class PriorityTaskExecutor extends ConcurrentTaskExecutor implements DisposableBean {
+
+    private final PriorityThreadPoolExecutor executor;
+
+    /**
+     * @param threadNamePrefix the prefix of the thread names
+     * @param poolSize         the count of threads
+     * @param agingInterval    the time in ms after which a waiting task overtakes new tasks of the next priority level
+     */
+    public PriorityTaskExecutor(String threadNamePrefix, int poolSize, long agingInterval) {
+        this(new PriorityThreadPoolExecutor(poolSize, TimeUnit.MILLISECONDS.toNanos(agingInterval), new CustomizableThreadFactory(threadNamePrefix)));
+    }
+
+    private PriorityTaskExecutor(PriorityThreadPoolExecutor executor) {
+        super(executor);
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the count of tasks waiting for a thread
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private interface Prioritized {
+
+        long getRank();
+
+        long getSequence();
+    }
+
+    private static class PriorityThreadPoolExecutor extends ThreadPoolExecutor {
+
+        private static final Comparator<Runnable> ORDER = Comparator.comparingLong((Runnable r) -> ((Prioritized)r).getRank())
+                .thenComparingLong(r -> ((Prioritized)r).getSequence());
+
+        private final long agingNanos;
+        private final AtomicLong sequence = new AtomicLong();
+
+        PriorityThreadPoolExecutor(int poolSize, long agingNanos, ThreadFactory threadFactory) {
+            super(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(16, ORDER), threadFactory);
+            this.agingNanos = agingNanos;
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+            return new PrioritizedFuture<>(callable, TaskPriority.current(), rank(TaskPriority.current()), sequence.getAndIncrement());
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+            return newTaskFor(Executors.callable(runnable, value));
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (command instanceof Prioritized) {
+                super.execute(command);
+            } else {
+                // Plain tasks, such as CompletableFuture stages, are ranked on submission as well
+                RuleRequest.Priority priority = TaskPriority.current();
+                super.execute(new PrioritizedRunnable(command, priority, rank(priority), sequence.getAndIncrement()));
+            }
+        }
+
+        private long rank(RuleRequest.Priority priority) {
+            return System.nanoTime() - priority.ordinal() * agingNanos;
+        }
+    }
+
+    private static class PrioritizedFuture<T> extends FutureTask<T> implements Prioritized {
+
+        private final RuleRequest.Priority priority;
+        private final long rank;
+        private final long sequence;
+
+        PrioritizedFuture(Callable<T> callable, RuleRequest.Priority priority, long rank, long sequence) {
+            super(callable);
+            this.priority = priority;
+            this.rank = rank;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            TaskPriority.runWith(priority, super::run);
+        }
+
+        @Override
+        public long getRank() {
+            return rank;
+        }
+
+        @Override
+        public long getSequence() {
+            return sequence;
+        }
+    }
+
+    private static class PrioritizedRunnable implements Runnable, Prioritized {
+
+        private final Runnable task;
+        private final RuleRequest.Priority priority;
+        private final long rank;
+        private final long sequence;
+
+        PrioritizedRunnable(Runnable task, RuleRequest.Priority priority, long rank, long sequence) {
+            this.task = task;
+            this.priority = priority;
+            this.rank = rank;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            TaskPriority.runWith(priority, task);
+        }
+
+        @Override
+        public long getRank() {
+            return rank;
+        }
+
+        @Override
+        public long getSequence() {
+            return sequence;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.rules.core.config;
+
+import com.example.rules.api.RuleRequest;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the scheduling priority of requests
+ * <p>A {@code rule.priority.<request class name>} property maps all requests of a class to a priority, otherwise
+ * requests carry their own priority.</p>
+ */
+@Component
+public class RequestPriorities {
+
+    private final Environment environment;
+    private final Map<Class<?>, Optional<RuleRequest.Priority>> configured = new ConcurrentHashMap<>();
+
+    public RequestPriorities(Environment environment) {
+        this.environment = environment;
+    }
+
+    public RuleRequest.Priority getPriority(RuleRequest request) {
+        return configured.computeIfAbsent(request.getClass(), c -> Optional.ofNullable(
+                        environment.getProperty("rule.priority." + c.getName(), RuleRequest.Priority.class)))
+                .orElseGet(() -> request.getPriority() != null ? request.getPriority() : RuleRequest.Priority.NORMAL);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.rules.core.config;
+
+import com.example.rules.api.RuleRequest;
+
+import java.util.function.Supplier;
+
+/**
+ * Holds the priority of the rule run executing on the current thread
+ * <p>Tasks submitted to a {@link PriorityTaskExecutor} take the priority of the submitting thread, and run with
+ * it, so that tasks spawned by a run inherit its priority.</p>
+ */
+public final class TaskPriority {
+
+    private static final ThreadLocal<RuleRequest.Priority> current = new ThreadLocal<>();
+
+    private TaskPriority() {
+    }
+
+    /**
+     * Returns the priority of the current thread, NORMAL if none was set
+     */
+    public static RuleRequest.Priority current() {
+        RuleRequest.Priority priority = current.get();
+        return priority != null ? priority : RuleRequest.Priority.NORMAL;
+    }
+
+    /**
+     * Calls a function with the given priority set on the current thread
+     */
+    public static <T> T callWith(RuleRequest.Priority priority, Supplier<T> function) {
+        RuleRequest.Priority previous = current.get();
+        current.set(priority);
+        try {
+            return function.get();
+        } finally {
+            if (previous != null) {
+                current.set(previous);
+            } else {
+                current.remove();
+            }
+        }
+    }
+
+    /**
+     * Runs a task with the given priority set on the current thread
+     */
+    public static void runWith(RuleRequest.Priority priority, Runnable task) {
+        callWith(priority, () -> {
+            task.run();
+            return null;
+        });
+    }
+}
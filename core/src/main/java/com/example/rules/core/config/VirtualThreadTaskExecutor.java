@@ -0,0 +1,125 @@
+package com.example.rules.core.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * An AsyncTaskExecutor running each task on a new virtual thread, with concurrency bounded by a semaphore
+ * <p>Tasks waiting for a permit park their virtual thread instead of occupying a pooled platform thread, so blocking
+ * I/O in tasks no longer caps throughput at the pool size. Virtual threads are looked up reflectively, as they are
+ * only available from Java 21.</p>
+ */
+@Slf4j
+public class VirtualThreadTaskExecutor extends TaskExecutorAdapter implements DisposableBean {
+
+    private final ExecutorService executorService;
+    private final Semaphore permits;
+    private final int limit;
+
+    private VirtualThreadTaskExecutor(ExecutorService executorService, int limit) {
+        this(executorService, new Semaphore(limit), limit);
+    }
+
+    private VirtualThreadTaskExecutor(ExecutorService executorService, Semaphore permits, int limit) {
+        super(new LimitedExecutor(executorService, permits));
+        this.executorService = executorService;
+        this.permits = permits;
+        this.limit = limit;
+    }
+
+    /**
+     * Creates an executor on virtual threads
+     *
+     * @param threadNamePrefix the prefix of the thread names
+     * @param limit            the maximum count of tasks running concurrently
+     * @return the executor, or null if the JVM does not support virtual threads
+     */
+    public static VirtualThreadTaskExecutor create(String threadNamePrefix, int limit) {
+        ThreadFactory factory = virtualThreadFactory(threadNamePrefix);
+        if (factory == null) {
+            return null;
+        }
+        try {
+            ExecutorService executorService = (ExecutorService)Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+            return new VirtualThreadTaskExecutor(executorService, Math.max(1, limit));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Virtual thread executor unavailable", e);
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the JVM supports virtual threads
+     */
+    public static boolean isSupported() {
+        return virtualThreadFactory("probe") != null;
+    }
+
+    private static ThreadFactory virtualThreadFactory(String threadNamePrefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 1L);
+            return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the count of tasks currently running
+     */
+    public int getActiveCount() {
+        return limit - permits.availablePermits();
+    }
+
+    /**
+     * Returns an estimate of the count of tasks waiting for a permit
+     */
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public void destroy() {
+        executorService.shutdownNow();
+    }
+
+    private static class LimitedExecutor implements Executor {
+
+        private final Executor delegate;
+        private final Semaphore permits;
+
+        LimitedExecutor(Executor delegate, Semaphore permits) {
+            this.delegate = delegate;
+            this.permits = permits;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            delegate.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    // Shutting down
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+    }
+}
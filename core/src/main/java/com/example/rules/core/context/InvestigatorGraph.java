@@ -0,0 +1,124 @@
+package com.example.rules.core.context;
+
+import com.example.rules.api.RuleException;
+import com.example.rules.spi.investigator.Investigator;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The dependency graph between the Investigators of a request type
+ * <p>Built once per request type and shared by all runs of that type. Nodes are indexed by Investigator
+ * class, and each node lists the nodes depending on it, so that completions can release dependents directly.</p>
+ */
+class InvestigatorGraph {
+
+    private static final int[] NO_DEPENDENTS = new int[0];
+
+    private final Map<Class<?>, Integer> indexes;
+    private final int[][] dependents;
+    private final int[] dependencyCounts;
+
+    private InvestigatorGraph(Map<Class<?>, Integer> indexes, int[][] dependents, int[] dependencyCounts) {
+        this.indexes = indexes;
+        this.dependents = dependents;
+        this.dependencyCounts = dependencyCounts;
+    }
+
+    /**
+     * Builds the graph for a set of Investigators, failing if their dependencies contain a cycle
+     *
+     * @param investigators the Investigators of a request, one per class
+     * @return the dependency graph
+     */
+    static InvestigatorGraph build(List<? extends Investigator<?, ?>> investigators) {
+        int size = investigators.size();
+        Map<Class<?>, Integer> indexes = new HashMap<>(size * 2);
+        for (int i = 0; i < size; ++i) {
+            indexes.put(investigators.get(i).getClass(), i);
+        }
+
+        List<List<Integer>> edges = new ArrayList<>(size);
+        int[] dependencyCounts = new int[size];
+        for (int i = 0; i < size; ++i) {
+            edges.add(new ArrayList<>());
+        }
+        for (int i = 0; i < size; ++i) {
+            Investigator<?, ?> investigator = investigators.get(i);
+            for (int j = 0; j < size; ++j) {
+                // Self-dependencies are ignored, they can never be satisfied
+                if (i != j && investigator.dependsOn(Collections.singleton(investigators.get(j)))) {
+                    edges.get(j).add(i);
+                    ++dependencyCounts[i];
+                }
+            }
+        }
+
+        int[][] dependents = new int[size][];
+        for (int i = 0; i < size; ++i) {
+            List<Integer> d = edges.get(i);
+            dependents[i] = d.isEmpty() ? NO_DEPENDENTS : d.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        InvestigatorGraph graph = new InvestigatorGraph(indexes, dependents, dependencyCounts);
+        graph.checkCycles();
+        return graph;
+    }
+
+    /**
+     * Walks the graph in topological order, any node left unvisited is part of, or depends on, a cycle
+     */
+    private void checkCycles() {
+        int size = dependencyCounts.length;
+        int[] counts = dependencyCounts.clone();
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < size; ++i) {
+            if (counts[i] == 0) {
+                ready.add(i);
+            }
+        }
+
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            int node = ready.poll();
+            ++visited;
+            for (int dependent : dependents[node]) {
+                if (--counts[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (visited < size) {
+            String cycle = indexes.entrySet().stream()
+                    .filter(e -> counts[e.getValue()] > 0)
+                    .map(e -> e.getKey().getSimpleName())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            throw new RuleException("Circular dependency between investigators " + cycle);
+        }
+    }
+
+    /**
+     * Checks whether this graph was built for the same Investigator classes
+     */
+    boolean matches(Collection<? extends Investigator<?, ?>> investigators) {
+        return investigators.size() == indexes.size() && investigators.stream().allMatch(i -> indexes.containsKey(i.getClass()));
+    }
+
+    int size() {
+        return dependencyCounts.length;
+    }
+
+    int indexOf(Investigator<?, ?> investigator) {
+        return indexes.get(investigator.getClass());
+    }
+
+    int getDependencyCount(int index) {
+        return dependencyCounts[index];
+    }
+
+    int[] getDependents(int index) {
+        return dependents[index];
+    }
+}
@@ -3,7 +3,16 @@ package com.example.rules.core.context;
 import com.example.rules.api.RuleRequest;
 import com.example.rules.spi.RuleContext;
 
+import java.time.Instant;
+
 public interface RuleContextFactory {
 
     RuleContext newContext(RuleRequest request, long runId);
+
+    /**
+     * Creates the context of a run which must complete by a deadline
+     *
+     * @param deadline the deadline of the run, may be null
+     */
+    RuleContext newContext(RuleRequest request, long runId, Instant deadline);
 }
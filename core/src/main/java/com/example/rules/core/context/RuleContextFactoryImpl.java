@@ -7,6 +7,8 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+
 @Component
 public class RuleContextFactoryImpl implements RuleContextFactory, ApplicationContextAware {
 
@@ -16,4 +18,9 @@ public class RuleContextFactoryImpl implements RuleContextFactory, ApplicationCo
     public RuleContext newContext(RuleRequest request, long runId) {
         return applicationContext.getBean(RuleContext.class, runId, request);
     }
+
+    @Override
+    public RuleContext newContext(RuleRequest request, long runId, Instant deadline) {
+        return deadline != null ? applicationContext.getBean(RuleContext.class, runId, request, deadline) : newContext(request, runId);
+    }
 }
@@ -1,22 +1,25 @@
 package com.example.rules.core.context;
 
 import com.example.rules.api.*;
+import com.example.rules.core.metrics.RuleMetrics;
 import com.example.rules.core.processor.InvestigatorFactory;
+import com.example.rules.core.session.QueuedSession;
 import com.example.rules.spi.RuleContext;
-import com.example.rules.spi.RuleStats;
 import com.example.rules.spi.investigator.Investigator;
 import com.example.rules.spi.session.*;
 import lombok.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
-import org.springframework.context.event.EventListener;
 import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Component;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.springframework.beans.factory.config.ConfigurableBeanFactory.SCOPE_PROTOTYPE;
 
@@ -25,22 +28,30 @@ import static org.springframework.beans.factory.config.ConfigurableBeanFactory.S
 @RequiredArgsConstructor
 public class RuleContextImpl implements RuleContext {
 
-    @SuppressWarnings("unchecked")
-    private static final CompletableFuture<Investigator<?, ?>>[] FUTURE_ARRAY = new CompletableFuture[]{};
+    private static final Map<Class<?>, InvestigatorGraph> graphs = new ConcurrentHashMap<>();
 
     @Getter private final long id;
     private final RuleRequest request;
+    @Getter private final Instant deadline;
 
     private SessionFactory sessionFactory;
     private InvestigatorFactory investigatorFactory;
     private AsyncTaskExecutor executor;
+    private RuleMetrics metrics;
+    private int ingestCapacity = 10000;
+    private int ingestBatchSize = 1000;
 
     private final Map<String, Object> attributes = new ConcurrentHashMap<>();
-    private final Map<Investigator<?, ?>, CompletableFuture<Investigator<?, ?>>> running = new IdentityHashMap<>();
-    @Getter private final RuleStats stats = new RuleStatsImpl();
+    private final Map<Investigator<?, ?>, CompletableFuture<Void>> running = new IdentityHashMap<>();
+    @Getter private final RuleStatsImpl stats = new RuleStatsImpl();
+    private final List<Runnable> stopActions = new CopyOnWriteArrayList<>();
 
     @Setter private Serializable result;
-    @Getter private boolean stopped;
+    @Getter private volatile boolean stopped;
+
+    public RuleContextImpl(long id, RuleRequest request) {
+        this(id, request, null);
+    }
 
     @Autowired
     public void setSessionFactory(SessionFactory sessionFactory) {
@@ -58,6 +69,22 @@ public class RuleContextImpl implements RuleContext {
         this.executor = executor;
     }
 
+    @Autowired(required = false)
+    public void setMetrics(RuleMetrics metrics) {
+        this.metrics = metrics;
+        stats.setMetrics(metrics);
+    }
+
+    @Value("${session.ingest.capacity:10000}")
+    public void setIngestCapacity(int ingestCapacity) {
+        this.ingestCapacity = ingestCapacity;
+    }
+
+    @Value("${session.ingest.batch:1000}")
+    public void setIngestBatchSize(int ingestBatchSize) {
+        this.ingestBatchSize = ingestBatchSize;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public <T extends RuleRequest> T getRequest() {
@@ -86,57 +113,216 @@ public class RuleContextImpl implements RuleContext {
         return sessionFactory.getSession(request, sessionIds);
     }
 
+    @Override
+    public RuleSession newStatelessSession(String... sessionIds) {
+        return sessionFactory.getStatelessSession(request, sessionIds);
+    }
+
     @Override
     public void investigate(RuleSession session) {
-        Set<Investigator<?, ?>> waiting = new HashSet<>(investigatorFactory.getInvestigators(this));
+        List<Investigator<?, ?>> investigators = new ArrayList<>(investigatorFactory.getInvestigators(this));
+        if (investigators.isEmpty()) {
+            return;
+        }
 
-        // Run investigators, delaying those with dependencies until the dependencies have completed
-        while (!waiting.isEmpty()) {
-            CompletableFuture<Investigator<?, ?>>[] futures;
-            synchronized (running) {
-                waiting.stream()
-                        .filter(i -> !running.containsKey(i))
-                        .filter(i -> !i.dependsOn(waiting))
-                        .forEach(i -> running.put(i, schedule(i, session)));
-                futures = running.values().toArray(FUTURE_ARRAY);
+        InvestigatorGraph graph = graphs.compute(request.getClass(), (k, g) -> g != null && g.matches(investigators) ? g : InvestigatorGraph.build(investigators));
+
+        // Concurrent investigators feed the session through a queue, drained by one thread at a time
+        QueuedSession queuedSession = executor != null && investigators.size() > 1 ? new QueuedSession(session, ingestCapacity, ingestBatchSize) : null;
+        Investigation investigation = new Investigation(graph, investigators, queuedSession != null ? queuedSession : session);
+        investigation.start();
+
+        try {
+            investigation.completion.get();
+            if (queuedSession != null) {
+                queuedSession.flush();
+            }
+        } catch (InterruptedException e) {
+            // Request cancelled, cancel spawned investigators as well
+            Thread.currentThread().interrupt();
+            investigation.abort(new CancellationException());
+            throw new CancellationException();
+        } catch (CancellationException e) {
+            investigation.abort(e);
+            throw e;
+        } catch (ExecutionException e) {
+            investigation.abort(e.getCause());
+            if (e.getCause() instanceof CancellationException) {
+                throw (CancellationException)e.getCause();
+            }
+            throw new RuleException("Investigation failure", e);
+        }
+    }
+
+    private void cancelRunning() {
+        synchronized (running) {
+            running.values().forEach(f -> f.cancel(true));
+        }
+    }
+
+    /**
+     * A single run over an InvestigatorGraph
+     * <p>Root investigators are scheduled immediately, and each completion releases the dependents
+     * whose dependencies have all completed. The completion future finishes once all have run,
+     * or on the first failure.</p>
+     * <p>Investigators which have not started once the completion future is done are skipped, and an aborted
+     * investigation waits for those already gathering facts, so that none writes to the session after it is
+     * closed.</p>
+     */
+    private class Investigation {
+
+        private final InvestigatorGraph graph;
+        private final Investigator<?, ?>[] investigators;
+        private final AtomicInteger[] waitingOn;
+        private final AtomicInteger remaining;
+        private final RuleSession session;
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        /**
+         * The count of investigators gathering facts, guarded by this
+         */
+        private int active;
+
+        Investigation(InvestigatorGraph graph, List<Investigator<?, ?>> list, RuleSession session) {
+            this.graph = graph;
+            this.session = session;
+            int size = graph.size();
+            investigators = new Investigator<?, ?>[size];
+            waitingOn = new AtomicInteger[size];
+            for (Investigator<?, ?> investigator : list) {
+                int index = graph.indexOf(investigator);
+                investigators[index] = investigator;
+                waitingOn[index] = new AtomicInteger(graph.getDependencyCount(index));
+            }
+            remaining = new AtomicInteger(size);
+        }
+
+        void start() {
+            for (int i = 0; i < investigators.length && !completion.isDone(); ++i) {
+                if (graph.getDependencyCount(i) == 0) {
+                    launch(i);
+                }
+            }
+        }
+
+        private void launch(int index) {
+            if (stopped) {
+                completion.completeExceptionally(new CancellationException());
+                return;
             }
 
+            Investigator<?, ?> investigator = investigators[index];
             try {
-                Investigator<?, ?> o = (Investigator<?, ?>)CompletableFuture.anyOf(futures).get();
+                CompletableFuture<Void> future = schedule(() -> gather(investigator));
                 synchronized (running) {
-                    running.remove(o);
-                    waiting.remove(o);
+                    running.put(investigator, future);
                 }
-            } catch (InterruptedException | CancellationException e) {
-                // Request cancelled, cancel spawned investigators as well
-                running.values().forEach(f -> f.cancel(true));
-            } catch (ExecutionException e) {
-                throw new RuleException("Investigation failure", e);
+                future.whenComplete((v, e) -> onComplete(index, e));
+            } catch (RuntimeException e) {
+                completion.completeExceptionally(e);
+            }
+        }
+
+        private void onComplete(int index, Throwable error) {
+            synchronized (running) {
+                running.remove(investigators[index]);
+            }
+            if (error != null) {
+                completion.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+            for (int dependent : graph.getDependents(index)) {
+                if (waitingOn[dependent].decrementAndGet() == 0 && !completion.isDone()) {
+                    launch(dependent);
+                }
+            }
+            if (remaining.decrementAndGet() == 0) {
+                completion.complete(null);
+            }
+        }
+
+        /**
+         * Runs an investigator, unless the investigation is already over
+         */
+        private void gather(Investigator<?, ?> investigator) {
+            synchronized (this) {
+                // Checked once counted, so that abort() either waits for this investigator or is seen by it
+                ++active;
+                if (completion.isDone()) {
+                    exit();
+                    return;
+                }
+            }
+            try {
+                RuleContextImpl.this.gather(investigator, session);
+            } finally {
+                exit();
+            }
+        }
+
+        private synchronized void exit() {
+            if (--active == 0) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Ends the investigation on a failure, cancelling pending investigators and waiting for running ones
+         */
+        void abort(Throwable cause) {
+            completion.completeExceptionally(cause);
+            cancelRunning();
+            boolean interrupted = false;
+            synchronized (this) {
+                while (active > 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
             }
         }
     }
 
-    private CompletableFuture<Investigator<?, ?>> schedule(Investigator<?, ?> investigator, RuleSession session) {
+    private CompletableFuture<Void> schedule(Runnable task) {
         if (executor != null) {
-            return CompletableFuture.supplyAsync(() -> {
-                investigator.gatherFacts(session);
-                return investigator;
-            }, executor);
+            return CompletableFuture.runAsync(task, executor);
         } else {
-            return CompletableFuture.completedFuture(investigator).thenApply(i -> {
-                i.gatherFacts(session);
-                return i;
-            });
+            return CompletableFuture.completedFuture(null).thenRun(task);
         }
     }
 
-    @EventListener(RuleCancellationEvent.class)
-    public void onCancellationEvent(RuleCancellationEvent event) {
-        if (id == event.getSessionId()) {
-            stopped = true;
-            synchronized (running) {
-                running.values().forEach(f -> f.cancel(true));
-            }
+    private void gather(Investigator<?, ?> investigator, RuleSession session) {
+        if (metrics == null) {
+            investigator.gatherFacts(session);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            investigator.gatherFacts(session);
+        } finally {
+            metrics.recordInvestigator(investigator.getClass(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        cancelRunning();
+        stopActions.forEach(Runnable::run);
+    }
+
+    @Override
+    public void onStop(Runnable action) {
+        stopActions.add(action);
+        if (stopped) {
+            action.run();
         }
     }
 }
@@ -1,6 +1,7 @@
 package com.example.rules.core.context;
 
 import com.example.rules.api.FactStatistic;
+import com.example.rules.core.metrics.RuleMetrics;
 import com.example.rules.spi.RuleStats;
 import com.example.rules.spi.arbiter.Arbiter;
 import com.example.rules.spi.session.RuleSession;
@@ -8,19 +9,36 @@ import com.example.rules.spi.session.RuleSession;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Statistics of a single run, updated concurrently by investigators without locking
+ * <p>Counts are kept in adders, and maps of them are built on read.</p>
+ */
 public class RuleStatsImpl implements RuleStats {
 
-    private final Map<Class<? extends Arbiter<?, ?>>, Integer> ruleCounts = new HashMap<>();
+    private final Map<Class<?>, LongAdder> ruleCounts = new ConcurrentHashMap<>();
     private final TimingTracker ruleTimings = new TimingTracker();
-    private final Map<String, Integer> ruleHistogram = new HashMap<>();
+    private final Map<String, LongAdder> ruleHistogram = new ConcurrentHashMap<>();
 
-    private final Map<Class<?>, Integer> factCounts = new HashMap<>();
+    private final Map<Class<?>, LongAdder> factCounts = new ConcurrentHashMap<>();
     private final TimingTracker factTimings = new TimingTracker();
 
+    private RuleMetrics metrics;
+
+    /**
+     * Sets the metrics which fact and rule counts are also reported to
+     */
+    void setMetrics(RuleMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @Override
     public Map<String, Integer> getRuleHistogram() {
-        return ruleHistogram;
+        Map<String, Integer> histogram = new HashMap<>();
+        ruleHistogram.forEach((id, count) -> histogram.put(id, count.intValue()));
+        return histogram;
     }
 
     @Override
@@ -29,18 +47,18 @@ public class RuleStatsImpl implements RuleStats {
             return Collections.emptyMap();
         }
         Map<String, FactStatistic> stats = new HashMap<>();
-        factCounts.forEach((clazz, count) -> stats.put(clazz.getSimpleName(), new FactStatistic(count, factTimings.getElapsed(clazz.getName()))));
+        factCounts.forEach((clazz, count) -> stats.put(clazz.getSimpleName(), new FactStatistic(count.intValue(), factTimings.getElapsed(clazz.getName()))));
         return stats;
     }
 
     @Override
     public int getRuleCount() {
-        return ruleCounts.values().stream().mapToInt(value -> value).sum();
+        return sum(ruleCounts);
     }
 
     @Override
     public <A extends Arbiter<?, ?>> int getRuleCount(Class<A> clazz) {
-        return ruleCounts.getOrDefault(clazz, 0);
+        return count(ruleCounts, clazz);
     }
 
     @Override
@@ -63,20 +81,25 @@ public class RuleStatsImpl implements RuleStats {
         String className = arbiterClass.getName();
         ruleTimings.end(className);
         Map<String, Integer> histogram = session.getRuleHistogram();
-        int total = histogram.values().stream().mapToInt(Integer::intValue).sum();
-        this.ruleCounts.merge(arbiterClass, total, (v1, v2) -> v1 + total);
-
-        histogram.forEach((id, cnt) -> this.ruleHistogram.merge(id, cnt, Integer::sum));
+        int total = 0;
+        for (Map.Entry<String, Integer> entry : histogram.entrySet()) {
+            total += entry.getValue();
+            ruleHistogram.computeIfAbsent(entry.getKey(), k -> new LongAdder()).add(entry.getValue());
+        }
+        ruleCounts.computeIfAbsent(arbiterClass, k -> new LongAdder()).add(total);
+        if (metrics != null) {
+            metrics.recordFirings(arbiterClass, total);
+        }
     }
 
     @Override
     public int getFactCount() {
-        return factCounts.values().stream().mapToInt(value -> value).sum();
+        return sum(factCounts);
     }
 
     @Override
     public int getFactCount(Class<?> factClass) {
-        return factCounts.getOrDefault(factClass, 0);
+        return count(factCounts, factClass);
     }
 
     @Override
@@ -98,6 +121,22 @@ public class RuleStatsImpl implements RuleStats {
     public void finishFacts(Class<?> factClass, int count) {
         String className = factClass.getName();
         factTimings.end(className);
-        factCounts.merge(factClass, count, Integer::sum);
+        factCounts.computeIfAbsent(factClass, k -> new LongAdder()).add(count);
+        if (metrics != null) {
+            metrics.recordFacts(factClass, count);
+        }
+    }
+
+    private static int sum(Map<?, LongAdder> counts) {
+        long total = 0;
+        for (LongAdder count : counts.values()) {
+            total += count.sum();
+        }
+        return (int)total;
+    }
+
+    private static int count(Map<Class<?>, LongAdder> counts, Class<?> clazz) {
+        LongAdder count = counts.get(clazz);
+        return count != null ? count.intValue() : 0;
     }
 }
@@ -0,0 +1,82 @@
+package com.example.rules.core.context;
+
+import com.example.rules.spi.RuleContext;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The live runs of this instance, by run ID
+ * <p>Cancelling a run looks it up and stops its context directly, instead of broadcasting to every live run.
+ * Stopping the context cancels its running investigators and, through the stop actions of the arbiter, halts the
+ * rule session in progress. Runs register as they start, and close their registration as they finish.</p>
+ */
+@Component
+public class RunRegistry {
+
+    private final Map<Long, Registration> runs = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a starting run
+     *
+     * @param runId   the run ID
+     * @param context the context of the run
+     * @return the registration, to close once the run has finished
+     */
+    public Registration register(long runId, RuleContext context) {
+        Registration registration = new Registration(runId, context);
+        runs.put(runId, registration);
+        return registration;
+    }
+
+    /**
+     * Stops a live run
+     *
+     * @param runId the run ID
+     * @return false if no run with this ID is live
+     */
+    public boolean cancel(long runId) {
+        Registration registration = runs.get(runId);
+        if (registration == null) {
+            return false;
+        }
+        registration.context.stop();
+        return true;
+    }
+
+    /**
+     * Returns the context of a live run, or null if no run with this ID is live
+     */
+    public RuleContext getContext(long runId) {
+        Registration registration = runs.get(runId);
+        return registration != null ? registration.context : null;
+    }
+
+    /**
+     * Returns the count of live runs
+     */
+    public int size() {
+        return runs.size();
+    }
+
+    /**
+     * The registration of a live run, removed from the registry on close
+     */
+    public class Registration implements AutoCloseable {
+
+        @Getter private final long runId;
+        @Getter private final RuleContext context;
+
+        private Registration(long runId, RuleContext context) {
+            this.runId = runId;
+            this.context = context;
+        }
+
+        @Override
+        public void close() {
+            runs.remove(runId, this);
+        }
+    }
+}
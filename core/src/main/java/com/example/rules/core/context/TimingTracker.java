@@ -1,30 +1,44 @@
 package com.example.rules.core.context;
 
 import java.io.Serializable;
-import java.util.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 /**
  * Track timings and print out a summary.
+ * <p>Operations may be timed concurrently from several threads without locking. The running spans of an operation
+ * are kept by thread, and completed spans are accumulated in adders, merged on read. Concurrent spans of the same
+ * operation add up. Each thread ends its operations in the reverse order it started them, unless it names the one
+ * to end. Memory is bounded by the count of operation names and threads, however many spans are timed.</p>
  */
 public class TimingTracker implements Serializable {
-    private final List<Timing> timings = new ArrayList<>();
-    private final Map<String, Timing> timingsMap = new HashMap<>();
-    private long activeStartTime;
-    private long activeTime;
-    private int activeCount;
-
-    private Timing currentTiming;
+    private final Map<String, Timing> timingsMap = new ConcurrentHashMap<>();
+    /**
+     * Names of the operations running on each thread, the most recently started last, only changed by their thread
+     */
+    private final Map<Long, Deque<String>> runningNames = new ConcurrentHashMap<>();
+    private final AtomicReference<ActiveSpan> activeSpan = new AtomicReference<>(ActiveSpan.IDLE);
+    private final LongAdder activeTime = new LongAdder();
+    private final AtomicLong firstStartTime = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong lastEndTime = new AtomicLong(Long.MIN_VALUE);
 
     /**
-     * Start timing a new operation with the given name.
+     * Start timing a new operation with the given name, discarding any previous timing of it.
      *
      * @param name operation name
      * @return this
      */
-    public synchronized TimingTracker start(String name) {
-        currentTiming = new Timing(name);
-        timingsMap.put(name, currentTiming);
-        checkActiveStart();
+    public TimingTracker start(String name) {
+        Timing timing = timingsMap.computeIfAbsent(name, Timing::new);
+        timing.elapsed.reset();
+        begin(timing);
         return this;
     }
 
@@ -35,65 +49,79 @@ public class TimingTracker implements Serializable {
      * @param name operation name
      * @return this
      */
-    public synchronized TimingTracker restart(String name) {
-        Timing timing = timingsMap.get(name);
-        if (timing == null) {
-            return start(name);
-        } else {
-            timing.restart();
-            currentTiming = timing;
-            checkActiveStart();
-            return this;
-        }
+    public TimingTracker restart(String name) {
+        begin(timingsMap.computeIfAbsent(name, Timing::new));
+        return this;
     }
 
-    private void checkActiveStart() {
-        if (activeCount++ == 0) {
-            // First start of an active span, record time
-            activeStartTime = System.currentTimeMillis();
+    private void begin(Timing timing) {
+        long now = System.nanoTime();
+        if (timing.begin(now)) {
+            runningNames.computeIfAbsent(Thread.currentThread().getId(), id -> new ArrayDeque<>()).addLast(timing.name);
+            firstStartTime.accumulateAndGet(now, Math::min);
+            activeSpan.updateAndGet(span -> span.begin(now));
         }
     }
 
     /**
-     * End timing the most recently started operation.
+     * End timing the operation most recently started by the current thread.
      *
      * @return this
      */
     public TimingTracker end() {
-        end(currentTiming);
+        Deque<String> names = runningNames.get(Thread.currentThread().getId());
+        String name = names != null ? names.peekLast() : null;
+        if (name != null) {
+            end(name);
+        }
         return this;
     }
 
     /**
-     * End timing the operation with the given name.
+     * End timing the operation with the given name, as started by the current thread.
      *
      * @param name operation name
      * @return this
      */
     public TimingTracker end(String name) {
-        end(timingsMap.get(name));
+        Timing timing = timingsMap.get(name);
+        if (timing != null) {
+            long now = System.nanoTime();
+            if (timing.end(now)) {
+                long threadId = Thread.currentThread().getId();
+                Deque<String> names = runningNames.get(threadId);
+                names.removeLastOccurrence(name);
+                if (names.isEmpty()) {
+                    runningNames.remove(threadId);
+                }
+                lastEndTime.accumulateAndGet(now, Math::max);
+                endActiveSpan();
+            }
+        }
         return this;
     }
 
-    private synchronized void end(Timing timing) {
-        if (timing != null) {
-            timing.end();
-            timings.add(new Timing(timing));
-            if (timing.equals(currentTiming)) {
-                // Handle case where the currentTiming is ended by name
-                currentTiming = null;
-            }
-            if (activeCount <= 1) {
-                activeTime += System.currentTimeMillis() - activeStartTime;
-                activeCount = 0;
-            } else {
-                --activeCount;
+    /**
+     * Counts down the running spans, adding the active span to the active time when the last one ends
+     * <p>The start and end of the active span are part of the state swapped, so that they cannot be moved by a
+     * concurrent begin.</p>
+     */
+    private void endActiveSpan() {
+        while (true) {
+            ActiveSpan span = activeSpan.get();
+            long now = System.nanoTime();
+            ActiveSpan next = span.end(now);
+            if (activeSpan.compareAndSet(span, next)) {
+                if (next.count == 0) {
+                    activeTime.add(now - span.since);
+                }
+                return;
             }
         }
     }
 
     /**
-     * Get the elapsed time of the operation with the given name.
+     * Get the elapsed time of the operation with the given name, including spans still running.
      *
      * @param name operation name
      * @return elapsed time in milliseconds
@@ -101,7 +129,7 @@ public class TimingTracker implements Serializable {
     public long getElapsed(String name) {
         Timing timing = timingsMap.get(name);
         if (timing != null) {
-            return timing.getElapsed();
+            return toMillis(timing.getElapsed(System.nanoTime()));
         }
         return 0;
     }
@@ -112,15 +140,8 @@ public class TimingTracker implements Serializable {
      * @return elapsed time in milliseconds
      */
     public long getElapsed() {
-        long start = timings.stream()
-                .mapToLong(t -> t.start)
-                .min()
-                .orElse(0L);
-        long end = timings.stream()
-                .mapToLong(t -> t.end)
-                .max()
-                .orElse(0);
-        return end - start;
+        long end = lastEndTime.get();
+        return end == Long.MIN_VALUE ? 0 : toMillis(end - firstStartTime.get());
     }
 
     /**
@@ -129,15 +150,26 @@ public class TimingTracker implements Serializable {
      * @return total time in milliseconds
      */
     public long getTotal() {
+        long now = System.nanoTime();
         long retval = 0;
         for (Timing timing : timingsMap.values()) {
-            retval += timing.getElapsed();
+            retval += timing.getElapsed(now);
         }
-        return retval;
+        return toMillis(retval);
     }
 
+    /**
+     * Get the time during which at least one operation was running, approximate while operations are running
+     *
+     * @return active time in milliseconds
+     */
     public long getActive() {
-        return activeTime;
+        long active = activeTime.sum();
+        ActiveSpan span = activeSpan.get();
+        if (span.count > 0) {
+            active += System.nanoTime() - span.since;
+        }
+        return toMillis(Math.max(0, active));
     }
 
     /**
@@ -146,74 +178,80 @@ public class TimingTracker implements Serializable {
      * @return true if no timings have been recorded.
      */
     public boolean isEmpty() {
-        return timings.isEmpty();
+        return lastEndTime.get() == Long.MIN_VALUE;
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
     }
 
     @Override
     public String toString() {
-        if (timings.isEmpty()) {
+        if (timingsMap.isEmpty()) {
             return "";
         }
-        return timings + " (elapsed: " + getElapsed() + " ms)" + (currentTiming != null ? " *" : "");
+        long now = System.nanoTime();
+        return timingsMap.values().stream()
+                .map(t -> t.name + ": " + toMillis(t.getElapsed(now)) + " ms" + (t.starts.isEmpty() ? "" : " *"))
+                .collect(Collectors.joining(", ", "[", "]")) + " (elapsed: " + getElapsed() + " ms)";
     }
 
-    private static class Timing implements Serializable {
-        private final String name;
-        private long start;
-        private long end;
-        private boolean running;
+    /**
+     * The count of running spans of all operations, and when the current active span started, or the last one ended
+     * if none is running
+     */
+    private static class ActiveSpan implements Serializable {
+        private static final ActiveSpan IDLE = new ActiveSpan(0, Long.MIN_VALUE);
 
-        Timing(String name) {
-            this.name = name;
-            this.start = System.currentTimeMillis();
-            running = true;
-        }
+        private final int count;
+        private final long since;
 
-        Timing(Timing timing) {
-            name = timing.name;
-            start = timing.start;
-            end = timing.end;
-            running = timing.running;
+        ActiveSpan(int count, long since) {
+            this.count = count;
+            this.since = since;
         }
 
-        void end() {
-            if (running) {
-                end = System.currentTimeMillis();
-                running = false;
-            }
+        ActiveSpan begin(long now) {
+            // A span starting before the previous one ended is only active from that end on
+            return new ActiveSpan(count + 1, count == 0 ? Math.max(now, since) : since);
         }
 
-        void restart() {
-            if (!running) {
-                start = System.currentTimeMillis() - getElapsed();
-                running = true;
-            }
+        ActiveSpan end(long now) {
+            return new ActiveSpan(count - 1, count == 1 ? now : since);
         }
+    }
 
-        long getElapsed() {
-            if (running) {
-                return System.currentTimeMillis() - start;
-            } else {
-                return end - start;
-            }
-        }
+    private static class Timing implements Serializable {
+        private final String name;
+        private final LongAdder elapsed = new LongAdder();
+        /**
+         * Start times of the running spans, by thread ID
+         */
+        private final Map<Long, Long> starts = new ConcurrentHashMap<>();
 
-        @Override
-        public int hashCode() {
-            return name.hashCode();
+        Timing(String name) {
+            this.name = name;
         }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) return true;
-            if (obj == null || !obj.getClass().equals(getClass())) return false;
+        boolean begin(long now) {
+            return starts.putIfAbsent(Thread.currentThread().getId(), now) == null;
+        }
 
-            return Objects.equals(this.name, ((Timing)obj).name);
+        boolean end(long now) {
+            Long start = starts.remove(Thread.currentThread().getId());
+            if (start == null) {
+                return false;
+            }
+            elapsed.add(now - start);
+            return true;
         }
 
-        @Override
-        public String toString() {
-            return name + ": " + getElapsed() + " ms";
+        long getElapsed(long now) {
+            long total = elapsed.sum();
+            for (long start : starts.values()) {
+                total += now - start;
+            }
+            return total;
         }
     }
 }
@@ -8,11 +8,15 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "rule_log")
+@Table(name = "rule_log", indexes = @Index(name = "rule_log_fingerprint_idx", columnList = "requestFingerprint, rulesRelease"))
 public class RuleLog {
 
+    public static final String SEQUENCE_NAME = "rule_log_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SEQUENCE_NAME)
+    @SequenceGenerator(name = SEQUENCE_NAME, sequenceName = SEQUENCE_NAME, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(updatable = false)
@@ -29,6 +33,18 @@ public class RuleLog {
     @Column(updatable = false)
     private int requestHash;
 
+    /**
+     * Content fingerprint of the request, see {@link com.example.rules.core.repository.RuleSerializer#fingerprint(Object)}
+     */
+    @Column(updatable = false, length = 64)
+    private String requestFingerprint;
+
+    /**
+     * Release of the rule containers which processed the request
+     */
+    @Column(updatable = false)
+    private String rulesRelease;
+
     @Lob
     @Column(updatable = false)
     private byte[] requestData;
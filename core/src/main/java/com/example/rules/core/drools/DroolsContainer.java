@@ -5,25 +5,128 @@ import com.example.rules.spi.session.RuleContainer;
 import com.example.rules.spi.session.RuleSession;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.kie.api.KieServices;
+import org.kie.api.builder.KieModule;
+import org.kie.api.builder.KieRepository;
 import org.kie.api.builder.ReleaseId;
+import org.kie.api.builder.model.KieSessionModel;
 import org.kie.api.runtime.KieContainer;
-import org.kie.api.runtime.KieSession;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+@Slf4j
 @EqualsAndHashCode(of = "id")
 public class DroolsContainer implements RuleContainer {
 
     @Getter private final KieContainer kieContainer;
     @Getter private final String id;
+    @Getter private final String release;
+    @Getter private final DroolsSessionPool sessionPool;
+
+    /**
+     * The module loaded into the KieRepository for this container only, removed once the container is disposed
+     */
+    private KieModule kieModule;
+    /**
+     * The count of sessions in use, -1 once the container is disposed
+     */
+    private final AtomicInteger openSessions = new AtomicInteger();
+    private volatile boolean retired;
 
     public DroolsContainer(KieContainer container) {
+        this(container, 0, 0);
+    }
+
+    /**
+     * @param container       the KieContainer providing sessions
+     * @param poolSize        the maximum count of idle sessions pooled per session ID, 0 to disable pooling
+     * @param poolIdleTimeout the time in ms an idle pooled session is kept before being disposed
+     */
+    public DroolsContainer(KieContainer container, int poolSize, long poolIdleTimeout) {
         kieContainer = container;
         ReleaseId releaseId = kieContainer.getReleaseId();
         id = releaseId != null ? releaseId.getGroupId() + ":" + releaseId.getArtifactId() : "Drools Classpath";
+        release = releaseId != null ? releaseId.toExternalForm() : id;
+        sessionPool = new DroolsSessionPool(container, poolSize, poolIdleTimeout);
+    }
+
+    /**
+     * Loads a container from a kjar file, using the executable model it carries if any
+     * <p>All KieBases are built before returning. If the kjar fails to load, the KieRepository is left as it was,
+     * so that a previous version of the same release keeps resolving.</p>
+     *
+     * @param kjar            the kjar file
+     * @param poolSize        the maximum count of idle sessions pooled per session ID, 0 to disable pooling
+     * @param poolIdleTimeout the time in ms an idle pooled session is kept before being disposed
+     * @return the new container
+     */
+    public static DroolsContainer load(File kjar, int poolSize, long poolIdleTimeout) {
+        KieServices services = KieServices.get();
+        KieRepository repository = services.getRepository();
+        ReleaseId releaseId = readReleaseId(kjar);
+        KieModule previous = releaseId != null ? repository.getKieModule(releaseId) : null;
+
+        KieModule module = repository.addKieModule(services.getResources().newFileSystemResource(kjar));
+        KieContainer kieContainer = null;
+        try {
+            kieContainer = services.newKieContainer(module.getReleaseId());
+            kieContainer.getKieBaseNames().forEach(kieContainer::getKieBase);
+            DroolsContainer container = new DroolsContainer(kieContainer, poolSize, poolIdleTimeout);
+            container.kieModule = module;
+            return container;
+        } catch (RuntimeException e) {
+            if (kieContainer != null) {
+                kieContainer.dispose();
+            }
+            if (repository.getKieModule(module.getReleaseId()) == module) {
+                if (previous != null && previous.getReleaseId().equals(module.getReleaseId())) {
+                    repository.addKieModule(previous);
+                } else {
+                    repository.removeKieModule(module.getReleaseId());
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the release of a kjar from its Maven properties, without loading it
+     *
+     * @return the ReleaseId, or null if the file holds none
+     */
+    private static ReleaseId readReleaseId(File kjar) {
+        try (JarFile jar = new JarFile(kjar)) {
+            return jar.stream()
+                    .filter(entry -> entry.getName().startsWith("META-INF/maven/") && entry.getName().endsWith("/pom.properties"))
+                    .findFirst()
+                    .map(entry -> {
+                        Properties properties = new Properties();
+                        try (InputStream in = jar.getInputStream(entry)) {
+                            properties.load(in);
+                        } catch (IOException e) {
+                            return null;
+                        }
+                        String groupId = properties.getProperty("groupId");
+                        String artifactId = properties.getProperty("artifactId");
+                        String version = properties.getProperty("version");
+                        return groupId != null && artifactId != null && version != null
+                                ? KieServices.get().newReleaseId(groupId, artifactId, version)
+                                : null;
+                    })
+                    .orElse(null);
+        } catch (IOException e) {
+            return null;
+        }
     }
 
     @Override
@@ -36,8 +139,117 @@ public class DroolsContainer implements RuleContainer {
 
     @Override
     public RuleSession newSession(String sessionId) {
-        KieSession kieSession = kieContainer.newKieSession(sessionId);
-        return kieSession != null ? new DroolsSession(kieSession) : null;
+        if (!acquire()) {
+            return null;
+        }
+        RuleSession session = null;
+        try {
+            session = sessionPool.newSession(sessionId, this::release);
+            return session;
+        } finally {
+            if (session == null) {
+                release();
+            }
+        }
+    }
+
+    @Override
+    public RuleSession newStatelessSession(String sessionId) {
+        KieSessionModel model = kieContainer.getKieSessionModel(sessionId);
+        if (model == null || !acquire()) {
+            return null;
+        }
+        RuleSession session = null;
+        try {
+            if (model.getType() == KieSessionModel.KieSessionType.STATELESS) {
+                session = new StatelessDroolsSession(kieContainer.newStatelessKieSession(sessionId), this::release);
+            } else {
+                // Stateful session models are served statelessly from their KieBase
+                session = new StatelessDroolsSession(kieContainer.getKieBase(model.getKieBaseModel().getName()).newStatelessKieSession(), this::release);
+            }
+            return session;
+        } finally {
+            if (session == null) {
+                release();
+            }
+        }
+    }
+
+    /**
+     * Counts a new session in use, unless the container has been disposed
+     */
+    private boolean acquire() {
+        int count;
+        do {
+            count = openSessions.get();
+            if (count < 0) {
+                return false;
+            }
+        } while (!openSessions.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    private void release() {
+        if (openSessions.decrementAndGet() == 0 && retired) {
+            dispose();
+        }
+    }
+
+    /**
+     * Builds the KieBase of a session and, for stateful sessions, pools a first session
+     */
+    @Override
+    public void prepareSession(String sessionId) {
+        KieSessionModel model = kieContainer.getKieSessionModel(sessionId);
+        if (model != null) {
+            kieContainer.getKieBase(model.getKieBaseModel().getName());
+            if (model.getType() == KieSessionModel.KieSessionType.STATEFUL) {
+                RuleSession session = newSession(sessionId);
+                if (session != null) {
+                    session.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Disposes any idle sessions held by this container
+     */
+    public void close() {
+        sessionPool.clear();
+    }
+
+    /**
+     * Disposes this container once its sessions in use are closed, no new sessions being served from then on
+     */
+    @Override
+    public void retire() {
+        retired = true;
+        sessionPool.clear();
+        dispose();
+    }
+
+    /**
+     * Returns whether this container has been disposed, after being retired
+     */
+    public boolean isDisposed() {
+        return openSessions.get() < 0;
+    }
+
+    private void dispose() {
+        if (!openSessions.compareAndSet(0, -1)) {
+            return;
+        }
+        sessionPool.clear();
+        kieContainer.dispose();
+        if (kieModule != null) {
+            // A newer kjar of the same release may have replaced this module in the repository
+            KieRepository repository = KieServices.get().getRepository();
+            if (repository.getKieModule(kieModule.getReleaseId()) == kieModule) {
+                repository.removeKieModule(kieModule.getReleaseId());
+            }
+        }
+        log.info("Disposed container '" + release + "'");
     }
 
     @Override
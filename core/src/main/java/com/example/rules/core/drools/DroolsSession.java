@@ -1,13 +1,14 @@
 package com.example.rules.core.drools;
 
 import com.example.rules.spi.session.RuleSession;
-import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.mutable.MutableInt;
 import org.kie.api.definition.rule.Rule;
 import org.kie.api.event.process.ProcessEventListener;
 import org.kie.api.event.rule.*;
+import org.kie.api.runtime.ClassObjectFilter;
 import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.ObjectFilter;
 import org.kie.api.runtime.rule.*;
 import org.slf4j.Logger;
 
@@ -17,29 +18,77 @@ import java.util.stream.*;
 /**
  * Wrapper class for Drools sessions
  */
-@RequiredArgsConstructor
 public class DroolsSession implements RuleSession {
 
     private final KieSession session;
+    private final Runnable closer;
     private final Map<String, MutableInt> ruleCounts = new HashMap<>();
 
     private Logger logger;
+    private volatile boolean closed;
+
+    public DroolsSession(KieSession session) {
+        this(session, session::dispose);
+    }
+
+    /**
+     * @param session the wrapped KieSession
+     * @param closer  the action releasing the KieSession when this session is closed
+     */
+    public DroolsSession(KieSession session, Runnable closer) {
+        this.session = session;
+        this.closer = closer;
+    }
 
     @Override
     public <F> void insert(F fact) {
+        checkOpen();
         session.insert(fact);
     }
 
+    @Override
+    public <F> void insertAll(Iterable<F> facts) {
+        checkOpen();
+        for (F fact : facts) {
+            session.insert(fact);
+        }
+    }
+
     @Override
     public <T> Stream<T> getFacts(Class<T> factClass) {
-        return session.getObjects().stream()
-                .filter(factClass::isInstance)
+        checkOpen();
+        // The class filter is served from the per-class object stores of each entry point, avoiding a full scan
+        ObjectFilter filter = factClass == Object.class ? null : new ClassObjectFilter(factClass);
+        return session.getEntryPoints().stream()
+                .flatMap(entryPoint -> (filter == null ? entryPoint.getObjects() : entryPoint.getObjects(filter)).stream())
                 .map(factClass::cast);
     }
 
+    @Override
+    public long getFactCount() {
+        checkOpen();
+        return session.getEntryPoints().stream()
+                .mapToLong(EntryPoint::getFactCount)
+                .sum();
+    }
+
+    @Override
+    public long getFactCount(Class<?> factClass) {
+        checkOpen();
+        if (factClass == Object.class) {
+            return getFactCount();
+        }
+        // Counted on the collection views of the entry points, without copying the facts into a stream
+        ObjectFilter filter = new ClassObjectFilter(factClass);
+        return session.getEntryPoints().stream()
+                .mapToLong(entryPoint -> entryPoint.getObjects(filter).size())
+                .sum();
+    }
+
     @Override
     @SuppressWarnings("squid:S1166")
     public void setGlobal(String identifier, Object value) {
+        checkOpen();
         try {
             session.setGlobal(identifier, value);
         } catch (RuntimeException e) {
@@ -52,11 +101,13 @@ public class DroolsSession implements RuleSession {
     @Override
     @SuppressWarnings("unchecked")
     public <T> T getGlobal(String identifier) {
+        checkOpen();
         return (T)session.getGlobal(identifier);
     }
 
     @Override
     public int runRules() {
+        checkOpen();
         RuleNameFilter filter = new RuleNameFilter();
         int count = filter.isEmpty() ? session.fireAllRules() : session.fireAllRules(filter);
         if (logger != null) {
@@ -67,6 +118,7 @@ public class DroolsSession implements RuleSession {
 
     @Override
     public Stream<Object[]> query(String queryId, String[] objectNames, Object... arguments) {
+        checkOpen();
         QueryResults results = session.getQueryResults(queryId, arguments);
         if (results.size() > 0) {
             return StreamSupport.stream(results.spliterator(), false)
@@ -83,7 +135,10 @@ public class DroolsSession implements RuleSession {
 
     @Override
     public void halt() {
-        session.halt();
+        // A closed session may already serve another request
+        if (!closed) {
+            session.halt();
+        }
     }
 
     @Override
@@ -106,17 +161,31 @@ public class DroolsSession implements RuleSession {
 
     @Override
     public void close() {
-        session.dispose();
+        if (!closed) {
+            closed = true;
+            closer.run();
+        }
+    }
+
+    /**
+     * Rejects use of a closed session, whose KieSession may have been reset and pooled for another request
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Session has been closed");
+        }
     }
 
     @Override
     public void setLogger(Logger log) {
+        checkOpen();
         this.logger = log;
         session.addEventListener(new AgendaEventLogger());
     }
 
     @Override
     public <E extends EventListener> void addEventListener(E listener) {
+        checkOpen();
         if (listener instanceof RuleRuntimeEventListener) {
             session.addEventListener((RuleRuntimeEventListener)listener);
         } else if (listener instanceof AgendaEventListener) {
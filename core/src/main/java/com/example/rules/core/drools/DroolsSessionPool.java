@@ -0,0 +1,270 @@
+package com.example.rules.core.drools;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.drools.kiesession.session.StatefulKnowledgeSessionImpl;
+import org.kie.api.event.process.ProcessEventListener;
+import org.kie.api.event.rule.AgendaEventListener;
+import org.kie.api.event.rule.RuleRuntimeEventListener;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A bounded pool of reusable KieSessions, keyed by session ID
+ * <p>Released sessions are reset rather than disposed, which clears their facts, agenda and globals,
+ * and removes any event listeners added since the session was created.  Sessions left idle for longer
+ * than the idle timeout are disposed on the next access to their pool.</p>
+ */
+@Slf4j
+public class DroolsSessionPool {
+
+    private final KieContainer kieContainer;
+    @Getter private final int maxIdle;
+    @Getter private final long idleTimeout;
+    private final Map<String, SessionQueue> queues = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder creations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param kieContainer the container to create sessions from
+     * @param maxIdle      the maximum number of idle sessions kept per session ID
+     * @param idleTimeout  the time in ms an idle session is kept before being disposed, 0 to keep indefinitely
+     */
+    public DroolsSessionPool(KieContainer kieContainer, int maxIdle, long idleTimeout) {
+        this.kieContainer = kieContainer;
+        this.maxIdle = maxIdle;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Borrows a session from the pool, creating one if none are available
+     *
+     * @param sessionId the ID of the KieSession
+     * @return a DroolsSession which returns its KieSession to the pool on close, or null if the ID is unknown
+     */
+    public DroolsSession newSession(String sessionId) {
+        return newSession(sessionId, null);
+    }
+
+    /**
+     * Borrows a session from the pool, creating one if none are available
+     *
+     * @param sessionId the ID of the KieSession
+     * @param onClose   an action run once the session has been returned to the pool, may be null
+     * @return a DroolsSession which returns its KieSession to the pool on close, or null if the ID is unknown
+     */
+    public DroolsSession newSession(String sessionId, Runnable onClose) {
+        PooledSession pooled = borrow(sessionId);
+        if (pooled == null) {
+            return null;
+        }
+        return new DroolsSession(pooled.session, () -> {
+            release(sessionId, pooled);
+            if (onClose != null) {
+                onClose.run();
+            }
+        });
+    }
+
+    private PooledSession borrow(String sessionId) {
+        SessionQueue queue = queues.get(sessionId);
+        if (queue != null) {
+            long now = System.currentTimeMillis();
+            PooledSession pooled;
+            while ((pooled = queue.poll()) != null) {
+                if (!pooled.isExpired(now)) {
+                    hits.increment();
+                    return pooled;
+                }
+                evict(pooled);
+            }
+        }
+
+        misses.increment();
+        KieSession session = kieContainer.newKieSession(sessionId);
+        if (session == null) {
+            return null;
+        }
+        creations.increment();
+        return new PooledSession(session);
+    }
+
+    private void release(String sessionId, PooledSession pooled) {
+        if (maxIdle <= 0 || !reset(pooled)) {
+            pooled.session.dispose();
+            return;
+        }
+
+        SessionQueue queue = queues.computeIfAbsent(sessionId, k -> new SessionQueue());
+        pooled.lastUsed = System.currentTimeMillis();
+        if (!queue.offer(pooled, maxIdle)) {
+            evict(pooled);
+        }
+        queue.purge(pooled.lastUsed);
+    }
+
+    private boolean reset(PooledSession pooled) {
+        KieSession session = pooled.session;
+        try {
+            removeAdded(session.getAgendaEventListeners(), pooled.agendaListeners, session::removeEventListener);
+            removeAdded(session.getRuleRuntimeEventListeners(), pooled.ruleRuntimeListeners, session::removeEventListener);
+            removeAdded(session.getProcessEventListeners(), pooled.processListeners, session::removeEventListener);
+            if (session instanceof StatefulKnowledgeSessionImpl) {
+                ((StatefulKnowledgeSessionImpl)session).reset();
+                return true;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to reset pooled session, disposing", e);
+        }
+        return false;
+    }
+
+    private static <L> void removeAdded(Collection<L> current, Set<L> baseline, Consumer<L> remover) {
+        new ArrayList<>(current).stream()
+                .filter(l -> !baseline.contains(l))
+                .forEach(remover);
+    }
+
+    private void evict(PooledSession pooled) {
+        evictions.increment();
+        try {
+            pooled.session.dispose();
+        } catch (RuntimeException e) {
+            log.debug("Failed to dispose evicted session", e);
+        }
+    }
+
+    /**
+     * Disposes all idle sessions held by the pool
+     */
+    public void clear() {
+        queues.values().forEach(queue -> {
+            PooledSession pooled;
+            while ((pooled = queue.poll()) != null) {
+                evict(pooled);
+            }
+        });
+    }
+
+    /**
+     * Returns the count of sessions served from the pool
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the count of sessions requested while the pool had none available
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the count of KieSessions created by the pool
+     */
+    public long getCreations() {
+        return creations.sum();
+    }
+
+    /**
+     * Returns the count of sessions disposed due to idle timeout or pool overflow
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the count of idle sessions currently held for a session ID
+     */
+    public int getIdleCount(String sessionId) {
+        SessionQueue queue = queues.get(sessionId);
+        return queue != null ? queue.size.get() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "DroolsSessionPool{" +
+                "hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", creations=" + getCreations() +
+                ", evictions=" + getEvictions() +
+                '}';
+    }
+
+    /**
+     * A LIFO queue of idle sessions, the most recently used at the head and the oldest at the tail
+     */
+    private class SessionQueue {
+
+        private final Deque<PooledSession> sessions = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        PooledSession poll() {
+            PooledSession pooled = sessions.pollFirst();
+            if (pooled != null) {
+                size.decrementAndGet();
+            }
+            return pooled;
+        }
+
+        boolean offer(PooledSession pooled, int limit) {
+            if (size.incrementAndGet() > limit) {
+                size.decrementAndGet();
+                return false;
+            }
+            sessions.offerFirst(pooled);
+            return true;
+        }
+
+        void purge(long now) {
+            if (idleTimeout <= 0) {
+                return;
+            }
+            PooledSession oldest;
+            while ((oldest = sessions.peekLast()) != null && oldest.isExpired(now)) {
+                if (sessions.removeLastOccurrence(oldest)) {
+                    size.decrementAndGet();
+                    evict(oldest);
+                }
+            }
+        }
+    }
+
+    private class PooledSession {
+
+        private final KieSession session;
+        private final Set<AgendaEventListener> agendaListeners;
+        private final Set<RuleRuntimeEventListener> ruleRuntimeListeners;
+        private final Set<ProcessEventListener> processListeners;
+        private volatile long lastUsed;
+
+        PooledSession(KieSession session) {
+            this.session = session;
+            // Listeners configured on the session model are kept across resets
+            agendaListeners = identitySet(session.getAgendaEventListeners());
+            ruleRuntimeListeners = identitySet(session.getRuleRuntimeEventListeners());
+            processListeners = identitySet(session.getProcessEventListeners());
+        }
+
+        boolean isExpired(long now) {
+            return idleTimeout > 0 && now - lastUsed > idleTimeout;
+        }
+
+        private <L> Set<L> identitySet(Collection<L> listeners) {
+            Set<L> set = Collections.newSetFromMap(new IdentityHashMap<>());
+            set.addAll(listeners);
+            return set;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.rules.core.drools;
+
+import com.example.rules.spi.session.SessionFactory;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Hot reloads rule containers from the kjar files of a directory
+ * <p>A kjar is loaded when it appears or changes, and its rules are built on a background thread before it replaces
+ * the previous version of its container. Requests keep running on the previous version until then, and sessions in
+ * use finish on it. Several kjars may provide versions of the same container: a deleted kjar de-registers its
+ * container only if no other kjar provides it, otherwise the version of another kjar is loaded in its place.
+ * A change is only processed once the file has been left unmodified for the settle time, so that partially copied
+ * kjars are not loaded, and kjars whose size and modification time are unchanged since last processed are skipped,
+ * so that a rescan only rebuilds the kjars which changed.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty("rules.kjar.directory")
+public class KjarWatcher {
+
+    private final SessionFactory sessionFactory;
+    private final Path directory;
+    private final long settleTime;
+    private final int poolSize;
+    private final long poolIdleTimeout;
+
+    /**
+     * IDs of the containers loaded, by kjar file
+     */
+    private final Map<Path, String> loaded = new ConcurrentHashMap<>();
+    private final Map<Path, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+    /**
+     * Kjar files providing the registered version of each container, only used on the loader thread
+     */
+    private final Map<String, Path> registered = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    /**
+     * Size and modification time of each kjar file when last processed, loaded or not, only used on the loader thread
+     */
+    private final Map<Path, Stamp> processed = new HashMap<>();
+
+    private ScheduledExecutorService loader;
+    private WatchService watchService;
+    private Thread watcher;
+
+    public KjarWatcher(SessionFactory sessionFactory,
+                       @Value("${rules.kjar.directory}") String directory,
+                       @Value("${rules.kjar.settle:2000}") long settleTime,
+                       @Value("${session.pool.size:8}") int poolSize,
+                       @Value("${session.pool.idle.timeout:300000}") long poolIdleTimeout) {
+        this.sessionFactory = sessionFactory;
+        this.directory = Paths.get(directory).toAbsolutePath();
+        this.settleTime = settleTime;
+        this.poolSize = poolSize;
+        this.poolIdleTimeout = poolIdleTimeout;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        loader = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "KjarLoader"));
+        rescan(0);
+
+        watcher = daemon(this::watch, "KjarWatcher");
+        watcher.start();
+        log.info("Watching kjar directory " + directory);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        watcher.interrupt();
+        watchService.close();
+        loader.shutdownNow();
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        rescan(settleTime);
+                    } else {
+                        Path file = directory.resolve((Path)event.context());
+                        if (isKjar(file)) {
+                            schedule(file, settleTime);
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    log.error("Kjar directory " + directory + " is no longer accessible, stopped watching it");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("Stopped watching kjar directory " + directory);
+        }
+    }
+
+    /**
+     * Schedules the update of all kjars present in the directory, or loaded from it, unchanged ones are skipped
+     */
+    private void rescan(long delay) {
+        try (Stream<Path> files = Files.list(directory)) {
+            Stream.concat(files.filter(KjarWatcher::isKjar), loaded.keySet().stream())
+                    .distinct()
+                    .forEach(file -> schedule(file, delay));
+        } catch (IOException e) {
+            log.error("Failed to list kjar directory " + directory, e);
+        }
+    }
+
+    /**
+     * Schedules the update of a kjar, restarting its settle time on each change
+     */
+    private void schedule(Path file, long delay) {
+        pending.compute(file, (f, previous) -> {
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            return loader.schedule(() -> update(f), delay, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Loads a new or changed kjar, or unloads a deleted one
+     * <p>Runs on the loader thread, one kjar at a time. A kjar which fails to load leaves its previous version in
+     * place.</p>
+     */
+    private void update(Path file) {
+        Stamp stamp = Stamp.of(file);
+        if (stamp == null) {
+            processed.remove(file);
+            String id = loaded.remove(file);
+            if (id != null) {
+                release(id, file);
+            }
+            return;
+        }
+        if (stamp.equals(processed.put(file, stamp))) {
+            log.debug("Kjar " + file.getFileName() + " is unchanged");
+            return;
+        }
+        load(file);
+    }
+
+    private void load(Path file) {
+        long start = System.currentTimeMillis();
+        DroolsContainer container = null;
+        try {
+            container = DroolsContainer.load(file.toFile(), poolSize, poolIdleTimeout);
+            // Build all rules before switching, so that requests never wait on the new version
+            container.getProvidedSessions().forEach(container::prepareSession);
+        } catch (RuntimeException e) {
+            log.error("Failed to load kjar " + file + ", keeping the previous version", e);
+            if (container != null) {
+                container.retire();
+            }
+            return;
+        }
+
+        String id = container.getId();
+        sessionFactory.registerContainer(container);
+        registered.put(id, file);
+        String previous = loaded.put(file, id);
+        if (previous != null && !previous.equalsIgnoreCase(id)) {
+            // The file now holds another module
+            release(previous, file);
+        }
+        log.info("Loaded kjar " + file.getFileName() + " as '" + container.getRelease() + "' in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Handles a kjar which no longer provides a container
+     * <p>If the kjar provided the registered version, the container is loaded from another kjar providing it,
+     * or de-registered if there is none.</p>
+     */
+    private void release(String id, Path file) {
+        if (!file.equals(registered.get(id))) {
+            return;
+        }
+        Path other = loaded.entrySet().stream()
+                .filter(e -> e.getValue().equalsIgnoreCase(id))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse(null);
+        if (other != null) {
+            log.info("Kjar " + file.getFileName() + " no longer provides '" + id + "', loading it from " + other.getFileName());
+            registered.put(id, other);
+            load(other);
+        } else {
+            registered.remove(id);
+            sessionFactory.deregisterContainer(id);
+        }
+    }
+
+    private static boolean isKjar(Path file) {
+        return file.getFileName().toString().endsWith(".jar");
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * The size and modification time of a kjar file
+     */
+    @Data
+    private static class Stamp {
+
+        private final long size;
+        private final long modified;
+
+        /**
+         * @return the stamp of the file, or null if it does not exist
+         */
+        static Stamp of(Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return new Stamp(attributes.size(), attributes.lastModifiedTime().toMillis());
+            } catch (NoSuchFileException e) {
+                return null;
+            } catch (IOException e) {
+                // Processed as changed, loading reports the error
+                return new Stamp(-1, System.nanoTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.rules.core.drools;
+
+import com.example.rules.spi.session.RuleSession;
+import org.apache.commons.lang3.mutable.MutableInt;
+import org.kie.api.KieServices;
+import org.kie.api.command.Command;
+import org.kie.api.command.KieCommands;
+import org.kie.api.event.process.ProcessEventListener;
+import org.kie.api.event.rule.*;
+import org.kie.api.runtime.ExecutionResults;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.StatelessKieSession;
+import org.kie.api.runtime.rule.QueryResults;
+import org.kie.api.runtime.rule.QueryResultsRow;
+import org.slf4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Wrapper class for Drools stateless sessions
+ * <p>Inserted facts and globals are collected and executed as a single batch when rules are run, so no
+ * stateful session is created until then, and the backing KieBase may serve many threads concurrently.
+ * Queries are answered from the facts left by the last run, and the {@code drools.rules.enabled/disabled} rule
+ * filters are not applied.</p>
+ */
+public class StatelessDroolsSession implements RuleSession {
+
+    private static final String FIRED_ID = "fired";
+    private static final String OBJECTS_ID = "objects";
+
+    private final StatelessKieSession session;
+    private final Runnable closer;
+    private final int ruleCount;
+    private final List<Object> facts = new ArrayList<>();
+    private final Map<String, Object> globals = new LinkedHashMap<>();
+    private final Map<String, MutableInt> ruleCounts = new ConcurrentHashMap<>();
+
+    private Logger logger;
+    private Collection<Object> results;
+    private volatile boolean halted;
+    private boolean closed;
+
+    public StatelessDroolsSession(StatelessKieSession session) {
+        this(session, () -> {
+        });
+    }
+
+    /**
+     * @param session the wrapped StatelessKieSession
+     * @param closer  the action run when this session is closed
+     */
+    public StatelessDroolsSession(StatelessKieSession session, Runnable closer) {
+        this.session = session;
+        this.closer = closer;
+        ruleCount = session.getKieBase().getKiePackages().stream()
+                .mapToInt(pkg -> pkg.getRules().size())
+                .sum();
+        session.addEventListener(new AgendaEventLogger());
+    }
+
+    @Override
+    public synchronized <F> void insert(F fact) {
+        facts.add(fact);
+    }
+
+    @Override
+    public synchronized <F> void insertAll(Iterable<F> facts) {
+        if (facts instanceof Collection) {
+            this.facts.addAll((Collection<?>)facts);
+        } else {
+            facts.forEach(this.facts::add);
+        }
+    }
+
+    @Override
+    public synchronized <T> Stream<T> getFacts(Class<T> factClass) {
+        Collection<Object> objects = results != null ? results : new ArrayList<>(facts);
+        return objects.stream()
+                .filter(factClass::isInstance)
+                .map(factClass::cast);
+    }
+
+    /**
+     * Runs a query on the facts left by the last run of the rules, or on the inserted facts before that
+     * <p>The facts are inserted into a temporary session of the same KieBase, in which no rule is fired.</p>
+     */
+    @Override
+    public Stream<Object[]> query(String queryId, String[] objectNames, Object... arguments) {
+        List<Object> objects;
+        Map<String, Object> globalValues;
+        synchronized (this) {
+            objects = new ArrayList<>(results != null ? results : facts);
+            globalValues = new HashMap<>(globals);
+        }
+
+        KieSession querySession = session.getKieBase().newKieSession();
+        try {
+            globalValues.forEach(querySession::setGlobal);
+            objects.forEach(querySession::insert);
+            QueryResults queryResults = querySession.getQueryResults(queryId, arguments);
+            List<Object[]> rows = new ArrayList<>(queryResults.size());
+            for (QueryResultsRow row : queryResults) {
+                Object[] result = new Object[objectNames.length];
+                for (int i = 0; i < objectNames.length; ++i) {
+                    result[i] = row.get(objectNames[i]);
+                }
+                rows.add(result);
+            }
+            return rows.stream();
+        } finally {
+            querySession.dispose();
+        }
+    }
+
+    @Override
+    public synchronized void setGlobal(String identifier, Object value) {
+        globals.put(identifier, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getGlobal(String identifier) {
+        return (T)globals.get(identifier);
+    }
+
+    @Override
+    public int runRules() {
+        KieCommands commands = KieServices.get().getCommands();
+        List<Command<?>> batch = new ArrayList<>();
+        synchronized (this) {
+            globals.forEach((id, value) -> batch.add(commands.newSetGlobal(id, value)));
+            batch.add(commands.newInsertElements(new ArrayList<>(facts)));
+        }
+        batch.add(commands.newFireAllRules(FIRED_ID));
+        batch.add(commands.newGetObjects(OBJECTS_ID));
+
+        if (halted) {
+            // Halted before the session was created, there is nothing to stop from the firing thread
+            return 0;
+        }
+        ExecutionResults executionResults = session.execute(commands.newBatchExecution(batch));
+
+        @SuppressWarnings("unchecked")
+        Collection<Object> objects = (Collection<Object>)executionResults.getValue(OBJECTS_ID);
+        synchronized (this) {
+            results = objects;
+        }
+        if (logger != null) {
+            ruleCounts.forEach((name, value) -> logger.info("- Rule '" + name + "' asserted " + value.intValue() + " time(s)"));
+        }
+        Object fired = executionResults.getValue(FIRED_ID);
+        return fired instanceof Integer ? (Integer)fired : 0;
+    }
+
+    @Override
+    public void halt() {
+        halted = true;
+    }
+
+    @Override
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    @Override
+    public synchronized long getFactCount() {
+        return results != null ? results.size() : facts.size();
+    }
+
+    @Override
+    public synchronized long getFactCount(Class<?> factClass) {
+        Collection<Object> objects = results != null ? results : facts;
+        return objects.stream().filter(factClass::isInstance).count();
+    }
+
+    @Override
+    public void setLogger(Logger log) {
+        this.logger = log;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            closer.run();
+        }
+    }
+
+    @Override
+    public Map<String, Integer> getRuleHistogram() {
+        if (ruleCounts.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Integer> countMap = new HashMap<>(ruleCounts.size());
+        ruleCounts.forEach((id, cnt) -> countMap.put(id, cnt.intValue()));
+        return countMap;
+    }
+
+    @Override
+    public <E extends EventListener> void addEventListener(E listener) {
+        if (listener instanceof RuleRuntimeEventListener) {
+            session.addEventListener((RuleRuntimeEventListener)listener);
+        } else if (listener instanceof AgendaEventListener) {
+            session.addEventListener((AgendaEventListener)listener);
+        } else if (listener instanceof ProcessEventListener) {
+            session.addEventListener((ProcessEventListener)listener);
+        } else {
+            throw new IllegalArgumentException("Incompatible Drools session listener " + listener.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Counts rule firings, and halts the underlying session from the firing thread once halt() has been requested
+     */
+    private class AgendaEventLogger extends DefaultAgendaEventListener {
+        @Override
+        public void afterMatchFired(AfterMatchFiredEvent event) {
+            ruleCounts.computeIfAbsent(event.getMatch().getRule().getName(), k -> new MutableInt()).increment();
+            if (halted && event.getKieRuntime() instanceof KieSession) {
+                ((KieSession)event.getKieRuntime()).halt();
+            }
+        }
+    }
+}
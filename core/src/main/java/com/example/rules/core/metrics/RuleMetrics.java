@@ -0,0 +1,127 @@
+package com.example.rules.core.metrics;
+
+import com.example.rules.api.RuleRequest;
+import com.example.rules.core.admission.AdmissionController;
+import com.example.rules.core.context.RunRegistry;
+import io.micrometer.core.instrument.*;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the rule service
+ * <ul>
+ *     <li>{@code rules.arbiter}: timer of arbiter runs, tagged by arbiter</li>
+ *     <li>{@code rules.investigator}: timer of fact gathering, tagged by investigator</li>
+ *     <li>{@code rules.facts}: counter of inserted facts, tagged by fact class</li>
+ *     <li>{@code rules.firings}: counter of rule firings, tagged by arbiter</li>
+ *     <li>{@code rules.runs}: counter of finished runs, tagged by outcome</li>
+ *     <li>{@code rules.runs.active} and {@code rules.runs.queued}: gauges of in-flight runs, the latter with admission
+ *     control only</li>
+ * </ul>
+ * <p>Meters are resolved once per class and cached, so that recording does not allocate. Without a MeterRegistry
+ * in the application context, meters are registered with the global registry, which discards them unless another
+ * registry is added to it.</p>
+ */
+@Component
+public class RuleMetrics {
+
+    private final MeterRegistry registry;
+    private final Map<RuleRequest.State, Counter> runCounters = new EnumMap<>(RuleRequest.State.class);
+
+    private final ClassValue<Timer> arbiterTimers = new ClassValue<>() {
+        @Override
+        protected Timer computeValue(Class<?> type) {
+            return Timer.builder("rules.arbiter")
+                    .description("Duration of arbiter runs")
+                    .tag("arbiter", type.getSimpleName())
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    };
+
+    private final ClassValue<Timer> investigatorTimers = new ClassValue<>() {
+        @Override
+        protected Timer computeValue(Class<?> type) {
+            return Timer.builder("rules.investigator")
+                    .description("Duration of fact gathering")
+                    .tag("investigator", type.getSimpleName())
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    };
+
+    private final ClassValue<Counter> factCounters = new ClassValue<>() {
+        @Override
+        protected Counter computeValue(Class<?> type) {
+            return Counter.builder("rules.facts")
+                    .description("Facts inserted into rule sessions")
+                    .tag("fact", type.getSimpleName())
+                    .register(registry);
+        }
+    };
+
+    private final ClassValue<Counter> firingCounters = new ClassValue<>() {
+        @Override
+        protected Counter computeValue(Class<?> type) {
+            return Counter.builder("rules.firings")
+                    .description("Rules fired")
+                    .tag("arbiter", type.getSimpleName())
+                    .register(registry);
+        }
+    };
+
+    public RuleMetrics(ObjectProvider<MeterRegistry> registry, RunRegistry runRegistry, ObjectProvider<AdmissionController> admissionController) {
+        this.registry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+        Gauge.builder("rules.runs.active", runRegistry, RunRegistry::size)
+                .description("Rule runs in progress")
+                .register(this.registry);
+        AdmissionController admission = admissionController.getIfAvailable();
+        if (admission != null) {
+            Gauge.builder("rules.runs.queued", admission, AdmissionController::getQueueDepth)
+                    .description("Rule runs waiting to start")
+                    .register(this.registry);
+        }
+        for (RuleRequest.State state : RuleRequest.State.values()) {
+            if (state != RuleRequest.State.PENDING && state != RuleRequest.State.RUNNING) {
+                runCounters.put(state, Counter.builder("rules.runs")
+                        .description("Finished rule runs")
+                        .tag("outcome", state.name().toLowerCase())
+                        .register(this.registry));
+            }
+        }
+    }
+
+    public void recordArbiter(Class<?> arbiterClass, long nanos) {
+        arbiterTimers.get(arbiterClass).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordInvestigator(Class<?> investigatorClass, long nanos) {
+        investigatorTimers.get(investigatorClass).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFacts(Class<?> factClass, int count) {
+        if (count > 0) {
+            factCounters.get(factClass).increment(count);
+        }
+    }
+
+    public void recordFirings(Class<?> arbiterClass, int count) {
+        if (count > 0) {
+            firingCounters.get(arbiterClass).increment(count);
+        }
+    }
+
+    /**
+     * Counts a finished run by outcome, ignoring non-final states
+     */
+    public void recordRun(RuleRequest.State state) {
+        Counter counter = runCounters.get(state);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.rules.core.repository;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.collections.CollectionConverter;
+import com.thoughtworks.xstream.converters.collections.MapConverter;
+import com.thoughtworks.xstream.io.ExtendedHierarchicalStreamWriterHelper;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.mapper.Mapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Writes objects as uncompressed XStream XML, in a form which only depends on their content
+ * <p>Entries of hash based maps and sets are written in the order of the XML of their keys, rather than in
+ * iteration order, which depends on hash codes and insertion history.</p>
+ */
+class CanonicalXml {
+
+    private static final List<Class<?>> MAP_TYPES = List.of(HashMap.class, LinkedHashMap.class, Hashtable.class, ConcurrentHashMap.class);
+    private static final List<Class<?>> SET_TYPES = List.of(HashSet.class, LinkedHashSet.class);
+
+    private final XStream xstream;
+
+    CanonicalXml() {
+        xstream = new XStream();
+        Mapper mapper = xstream.getMapper();
+        for (Class<?> type : MAP_TYPES) {
+            xstream.registerConverter(new SortedMapConverter(mapper, type), XStream.PRIORITY_VERY_HIGH);
+        }
+        for (Class<?> type : SET_TYPES) {
+            xstream.registerConverter(new SortedSetConverter(mapper, type), XStream.PRIORITY_VERY_HIGH);
+        }
+    }
+
+    /**
+     * Writes the canonical XML of an Object as UTF-8
+     */
+    void write(Object o, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        xstream.toXML(o, writer);
+        writer.flush();
+    }
+
+    /**
+     * Sorts items by their canonical XML
+     */
+    private <T> List<T> sort(Collection<T> items, Function<T, Object> key) {
+        List<Map.Entry<String, T>> keyed = new ArrayList<>(items.size());
+        for (T item : items) {
+            keyed.add(new AbstractMap.SimpleImmutableEntry<>(xstream.toXML(key.apply(item)), item));
+        }
+        keyed.sort(Map.Entry.comparingByKey());
+        List<T> sorted = new ArrayList<>(keyed.size());
+        keyed.forEach(e -> sorted.add(e.getValue()));
+        return sorted;
+    }
+
+    private class SortedMapConverter extends MapConverter {
+
+        SortedMapConverter(Mapper mapper, Class<?> type) {
+            super(mapper, type);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+            String entryName = mapper().serializedClass(Map.Entry.class);
+            for (Map.Entry<Object, Object> entry : sort(((Map<Object, Object>)source).entrySet(), Map.Entry::getKey)) {
+                ExtendedHierarchicalStreamWriterHelper.startNode(writer, entryName, entry.getClass());
+                writeCompleteItem(entry.getKey(), context, writer);
+                writeCompleteItem(entry.getValue(), context, writer);
+                writer.endNode();
+            }
+        }
+    }
+
+    private class SortedSetConverter extends CollectionConverter {
+
+        SortedSetConverter(Mapper mapper, Class<?> type) {
+            super(mapper, type);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+            for (Object item : sort((Collection<Object>)source, item -> item)) {
+                writeCompleteItem(item, context, writer);
+            }
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.rules.core.repository;
+
+import com.example.rules.api.RuleRequest;
+import com.example.rules.core.domain.RuleLog;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A write-behind journal of RuleLog state transitions
+ * <p>Transitions are queued on the request thread and written by a background flusher using JDBC batch
+ * inserts and updates, merging all transitions of a run that fall in the same batch. Run IDs are allocated
+ * from the RuleLog sequence in blocks, compatible with the entity's pooled generator, so that most runs
+ * need no database round trip at all. The queue is bounded, blocking producers when full, and is flushed
+ * on shutdown.</p>
+ * <p>Rows logged before the sequence existed took their IDs from another generator, so the sequence is moved past
+ * the highest existing ID on startup.</p>
+ * <p>Each batch is written in a single transaction. A batch which fails is retried with an exponential backoff
+ * before any later transition is taken from the queue, so transitions are neither lost nor reordered, and the
+ * pending state of its runs is kept until it is written.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty("rule.log.enabled")
+public class RuleLogJournal {
+
+    private static final String INSERT_SQL = "insert into rule_log (id, create_time, update_time, state, request_class, request_hash,"
+            + " request_fingerprint, rules_release, request_data, request_description, result_class, result_description, message)"
+            + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String MAX_ID_SQL = "select max(id) from rule_log";
+    private static final String UPDATE_SQL = "update rule_log set update_time = ?, state = ?, result_class = coalesce(?, result_class),"
+            + " result_description = coalesce(?, result_description), message = coalesce(?, message) where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String sequenceSql;
+    private final BlockingQueue<Entry> queue;
+    private final Map<Long, RuleRequest.State> pendingStates = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final long flushInterval;
+    private final long maxRetryDelay;
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+    private long nextId;
+    private long maxId = -1;
+
+    public RuleLogJournal(DataSource dataSource,
+                          EntityManagerFactory entityManagerFactory,
+                          @Value("${rule.log.journal.capacity:10000}") int capacity,
+                          @Value("${rule.log.journal.batch:500}") int batchSize,
+                          @Value("${rule.log.journal.interval:100}") long flushInterval,
+                          @Value("${rule.log.journal.retry.max:30000}") long maxRetryDelay) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.sequenceSql = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices()
+                .getDialect()
+                .getSequenceNextValString(RuleLog.SEQUENCE_NAME);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.maxRetryDelay = maxRetryDelay;
+
+        seedSequence();
+
+        flusher = new Thread(this::flushLoop, "RuleLogJournal");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Allocates an ID for a new RuleLog and queues its insertion
+     *
+     * @param logEntry the new RuleLog
+     * @return the allocated ID
+     */
+    public long start(RuleLog logEntry) {
+        long id = allocateId();
+        logEntry.setId(id);
+        enqueue(new Entry(logEntry));
+        return id;
+    }
+
+    /**
+     * Queues a state transition for an existing RuleLog
+     *
+     * @param id                the ID of the RuleLog
+     * @param state             the new state
+     * @param resultClass       the result class, or null to leave unchanged
+     * @param resultDescription the result description, or null to leave unchanged
+     * @param message           a message describing the transition, or null to leave unchanged
+     */
+    public void update(long id, RuleRequest.State state, String resultClass, String resultDescription, String message) {
+        enqueue(new Entry(id, state, resultClass, resultDescription, message));
+    }
+
+    /**
+     * Returns the state of a run whose latest transition has not been written yet
+     *
+     * @param id the ID of the RuleLog
+     * @return the pending state, or null if all transitions for the run have been written
+     */
+    public RuleRequest.State getPendingState(long id) {
+        return pendingStates.get(id);
+    }
+
+    private void enqueue(Entry entry) {
+        pendingStates.put(entry.id, entry.state);
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while journaling state " + entry.state + " for run " + entry.id);
+        }
+    }
+
+    /**
+     * Allocates IDs from the sequence in blocks, following the pooled optimizer used by the RuleLog entity:
+     * each sequence value is the upper bound of a block, except for initial values lower than the block size
+     */
+    private synchronized long allocateId() {
+        if (nextId > maxId) {
+            long value = nextSequenceValue();
+            if (maxId < 0 && value < RuleLog.ID_ALLOCATION_SIZE) {
+                nextId = value;
+                maxId = nextSequenceValue();
+            } else {
+                nextId = value - RuleLog.ID_ALLOCATION_SIZE + 1;
+                maxId = value;
+            }
+        }
+        return nextId++;
+    }
+
+    /**
+     * Restarts the sequence above the highest existing ID if the next block it would hand out overlaps existing rows
+     */
+    private void seedSequence() {
+        Long max = jdbcTemplate.queryForObject(MAX_ID_SQL, Long.class);
+        if (max != null && nextSequenceValue() - RuleLog.ID_ALLOCATION_SIZE < max) {
+            long start = max + RuleLog.ID_ALLOCATION_SIZE;
+            try {
+                jdbcTemplate.execute("alter sequence " + RuleLog.SEQUENCE_NAME + " restart with " + start);
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Sequence " + RuleLog.SEQUENCE_NAME + " is behind the existing rule_log IDs,"
+                        + " it must be restarted with " + start, e);
+            }
+            log.info("Restarted sequence " + RuleLog.SEQUENCE_NAME + " with " + start + " above the existing rule_log IDs");
+        }
+    }
+
+    private long nextSequenceValue() {
+        Long value = jdbcTemplate.queryForObject(sequenceSql, Long.class);
+        return value != null ? value : 0;
+    }
+
+    private void flushLoop() {
+        List<Entry> entries = new ArrayList<>(batchSize);
+        Collection<Entry> batch = Collections.emptyList();
+        long retryDelay = 0;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    Entry first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    entries.add(first);
+                    queue.drainTo(entries, batchSize - 1);
+                    batch = merge(entries);
+                    entries.clear();
+                } else {
+                    // Retry the failed batch before taking later transitions, which may depend on it
+                    Thread.sleep(retryDelay);
+                }
+
+                if (write(batch, retryDelay == 0)) {
+                    batch = Collections.emptyList();
+                    retryDelay = 0;
+                } else {
+                    retryDelay = Math.min(Math.max(2 * retryDelay, flushInterval), maxRetryDelay);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested, drain whatever remains
+                running = false;
+            }
+        }
+    }
+
+    /**
+     * Merges all transitions of each run into a single entry
+     */
+    private static Collection<Entry> merge(List<Entry> entries) {
+        Map<Long, Entry> merged = new LinkedHashMap<>();
+        entries.forEach(e -> merged.merge(e.id, e, Entry::merge));
+        return merged.values();
+    }
+
+    /**
+     * Writes a batch of merged entries in a single transaction
+     *
+     * @return true if the batch was written, false if it must be retried
+     */
+    private boolean write(Collection<Entry> batch, boolean firstAttempt) {
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        batch.forEach(e -> {
+            if (e.insert != null) {
+                inserts.add(e.toInsertArgs());
+            } else {
+                updates.add(e.toUpdateArgs());
+            }
+        });
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!inserts.isEmpty()) {
+                    jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+                }
+                if (!updates.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+                }
+            });
+        } catch (RuntimeException e) {
+            if (firstAttempt) {
+                log.error("Failed to write " + batch.size() + " rule log entries, retrying", e);
+            } else {
+                log.warn("Failed again to write " + batch.size() + " rule log entries: " + e.getMessage());
+            }
+            return false;
+        }
+        batch.forEach(e -> pendingStates.remove(e.id, e.state));
+        return true;
+    }
+
+    /**
+     * Stops accepting transitions and writes all queued ones
+     */
+    @PreDestroy
+    public void close() {
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!pendingStates.isEmpty()) {
+            log.warn(pendingStates.size() + " rule log runs have transitions not written before shutdown");
+        }
+    }
+
+    private static class Entry {
+
+        private final long id;
+        private RuleLog insert;
+        private RuleRequest.State state;
+        private LocalDateTime updateTime;
+        private String resultClass;
+        private String resultDescription;
+        private String message;
+
+        Entry(RuleLog insert) {
+            this.id = insert.getId();
+            this.insert = insert;
+            this.state = insert.getState();
+            this.updateTime = insert.getUpdateTime();
+        }
+
+        Entry(long id, RuleRequest.State state, String resultClass, String resultDescription, String message) {
+            this.id = id;
+            this.state = state;
+            this.updateTime = LocalDateTime.now();
+            this.resultClass = resultClass;
+            this.resultDescription = resultDescription;
+            this.message = message;
+        }
+
+        Entry merge(Entry later) {
+            state = later.state;
+            updateTime = later.updateTime;
+            resultClass = later.resultClass != null ? later.resultClass : resultClass;
+            resultDescription = later.resultDescription != null ? later.resultDescription : resultDescription;
+            message = later.message != null ? later.message : message;
+            if (insert == null) {
+                insert = later.insert;
+            }
+            return this;
+        }
+
+        Object[] toInsertArgs() {
+            return new Object[]{id, insert.getCreateTime(), updateTime, state.ordinal(), insert.getRequestClass(), insert.getRequestHash(),
+                    insert.getRequestFingerprint(), insert.getRulesRelease(), insert.getRequestData(), insert.getRequestDescription(),
+                    resultClass != null ? resultClass : insert.getResultClass(),
+                    resultDescription != null ? resultDescription : insert.getResultDescription(),
+                    message != null ? message : insert.getMessage()};
+        }
+
+        Object[] toUpdateArgs() {
+            return new Object[]{updateTime, state.ordinal(), resultClass, resultDescription, message, id};
+        }
+    }
+}
@@ -16,11 +16,40 @@ public interface RuleLogRepository extends CrudRepository<RuleLog, Long> {
 
     Stream<RuleLog> findByRequestClassAndRequestHashOrderByCreateTimeDesc(String requestClass, int requestHash);
 
+    Optional<RuleLog> findFirstByRequestFingerprintOrderByCreateTimeDesc(String requestFingerprint);
+
+    Optional<RuleLog> findFirstByRequestFingerprintAndRulesReleaseAndStateOrderByCreateTimeDesc(String requestFingerprint, String rulesRelease,
+                                                                                               RuleRequest.State state);
+
     void deleteByCreateTimeBefore(LocalDateTime createTime);
 
+    /**
+     * Finds the most recent run of an identical request
+     * <p>Runs logged before requests were fingerprinted are matched by hash code and equality instead.</p>
+     *
+     * @param request the RuleRequest
+     * @return the RuleLog of the run, if any
+     */
     default Optional<RuleLog> findMostRecentRequest(RuleRequest request) {
-        return findByRequestClassAndRequestHashOrderByCreateTimeDesc(request.getClass().getName(), request.hashCode())
-                .filter(l -> request.equals(RuleSerializer.deserialize(l.getRequestData())))
-                .findFirst();
+        Optional<RuleLog> log = findFirstByRequestFingerprintOrderByCreateTimeDesc(RuleSerializer.fingerprint(request));
+        if (log.isPresent()) {
+            return log;
+        }
+        try (Stream<RuleLog> legacy = findByRequestClassAndRequestHashOrderByCreateTimeDesc(request.getClass().getName(), request.hashCode())) {
+            return legacy.filter(l -> l.getRequestFingerprint() == null)
+                    .filter(l -> request.equals(RuleSerializer.deserialize(l.getRequestData())))
+                    .findFirst();
+        }
+    }
+
+    /**
+     * Finds the most recent successful run of an identical request, processed by the same rules release
+     *
+     * @param requestFingerprint the fingerprint of the request
+     * @param rulesRelease       the current rules release
+     * @return the RuleLog of the run, if any
+     */
+    default Optional<RuleLog> findMostRecentSuccess(String requestFingerprint, String rulesRelease) {
+        return findFirstByRequestFingerprintAndRulesReleaseAndStateOrderByCreateTimeDesc(requestFingerprint, rulesRelease, RuleRequest.State.SUCCESS);
     }
 }
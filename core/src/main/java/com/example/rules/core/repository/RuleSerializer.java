@@ -1,29 +1,78 @@
 package com.example.rules.core.repository;
 
 import com.example.rules.api.RuleException;
-import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.security.AnyTypePermission;
+import com.example.rules.core.repository.codec.KryoCodec;
+import com.example.rules.core.repository.codec.RuleCodec;
+import com.example.rules.core.repository.codec.XStreamCodec;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterOutputStream;
+import java.nio.ByteBuffer;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Serializes requests and results to binary blobs, through a pluggable {@link RuleCodec}
+ * <p>Blobs start with a two byte header: a marker byte followed by the format of the codec which wrote them.
+ * Blobs without the header are compressed XStream XML, as written before codecs were introduced.
+ * The codec used for writing defaults to XStream, and can be selected with the {@code rule.serializer.codec}
+ * system property ({@code xstream} or {@code kryo}) or {@link #setCodec(RuleCodec)}.</p>
+ */
 @Slf4j
 public class RuleSerializer {
 
-    private static final XStream xstream;
+    private static final byte MARKER = (byte)0xC5;
+    private static final int HEADER_LENGTH = 2;
+
+    private static final XStreamCodec xstream = new XStreamCodec();
+    private static final CanonicalXml canonical = new CanonicalXml();
+    private static final Map<Byte, RuleCodec> codecs = new ConcurrentHashMap<>();
+    private static volatile RuleCodec codec;
 
     static {
-        xstream = new XStream();
-        xstream.addPermission(AnyTypePermission.ANY);
+        KryoCodec kryo = new KryoCodec();
+        codecs.put(xstream.getFormat(), xstream);
+        codecs.put(kryo.getFormat(), kryo);
+        codec = "kryo".equalsIgnoreCase(System.getProperty("rule.serializer.codec", "")) ? kryo : xstream;
     }
 
     private RuleSerializer() {
     }
 
+    /**
+     * Sets the codec used to serialize objects, registering it for deserialization as well
+     *
+     * @param codec the RuleCodec
+     */
+    public static void setCodec(RuleCodec codec) {
+        register(codec);
+        RuleSerializer.codec = codec;
+    }
+
+    /**
+     * Returns the codec used to serialize objects
+     */
+    public static RuleCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Registers a codec for deserialization of blobs in its format
+     *
+     * @param codec the RuleCodec
+     */
+    public static void register(RuleCodec codec) {
+        RuleCodec previous = codecs.putIfAbsent(codec.getFormat(), codec);
+        if (previous != null && previous != codec && previous.getClass() != codec.getClass()) {
+            throw new RuleException("Codec format " + codec.getFormat() + " already registered by " + previous.getClass().getName());
+        }
+    }
+
     /**
      * Serializes an Object to an XML string
      *
@@ -31,20 +80,48 @@ public class RuleSerializer {
      * @return an XML representation of the serialized Object
      */
     public static String serializeAsString(Object o) {
-        return xstream.toXML(o);
+        return xstream.toXml(o);
     }
 
     /**
-     * Returns the XML representation of a compressed XML-serialized Object
+     * Computes a content fingerprint of an Object, stable across JVMs and codecs
+     * <p>The fingerprint is the SHA-256 digest of the uncompressed XML form of the Object, with the entries of hash
+     * based maps and sets sorted. It does not depend on the configured codec, the compression of stored blobs, or
+     * the iteration order of hash collections.</p>
      *
-     * @param bytes the compressed XML
+     * @param o the Object to fingerprint
+     * @return the fingerprint as a 64 character hex string
+     */
+    public static String fingerprint(Object o) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+                canonical.write(o, out);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | IOException | RuntimeException e) {
+            throw new RuleException("Failed to fingerprint object " + o.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * Returns the XML representation of a serialized Object
+     *
+     * @param bytes the serialized Object
      * @return the XML representation of the serialized Object
      */
     public static String deserializeAsString(byte[] bytes) {
         if (bytes != null && bytes.length > 0) {
             try {
-                return decompress(bytes);
-            } catch (IOException e) {
+                RuleCodec c = getCodec(bytes);
+                if (c == null) {
+                    return xstream.decodeAsString(new ByteArrayInputStream(bytes));
+                } else if (c instanceof XStreamCodec) {
+                    return xstream.decodeAsString(body(bytes));
+                } else {
+                    return xstream.toXml(c.decode(body(bytes)));
+                }
+            } catch (IOException | RuntimeException e) {
                 log.warn("Failed to deserialize data as String", e);
             }
         }
@@ -52,31 +129,35 @@ public class RuleSerializer {
     }
 
     /**
-     * Serializes an Object to a compressed XML String
+     * Serializes an Object with the configured codec
      *
      * @param o the Object to serialize
-     * @return a byte array containing a compressed XML String
+     * @return a byte array containing the serialized Object, prefixed with its format header
      */
     public static byte[] serialize(Object o) {
-        try {
-            String s = serializeAsString(o);
-            return compress(s);
+        RuleCodec c = codec;
+        try (ByteArrayOutputStream os = new ByteArrayOutputStream(256)) {
+            os.write(MARKER);
+            os.write(c.getFormat());
+            c.encode(o, os);
+            return os.toByteArray();
         } catch (IOException | RuntimeException e) {
             throw new RuleException("Failed to serialize object " + o.getClass().getName(), e);
         }
     }
 
     /**
-     * Deserializes an Object from a compressed XML String
+     * Deserializes an Object, using the codec identified by its header
      *
-     * @param bytes a byte array containing a compressed XML String
+     * @param bytes a byte array containing a serialized Object
      * @return the deserialized Object
      */
+    @SuppressWarnings("unchecked")
     public static <T> T deserialize(byte[] bytes) {
         try {
             if (bytes != null && bytes.length > 0) {
-                String s = decompress(bytes);
-                return deserialize(s);
+                RuleCodec c = getCodec(bytes);
+                return c != null ? (T)c.decode(body(bytes)) : (T)xstream.decode(new ByteArrayInputStream(bytes));
             } else {
                 return null;
             }
@@ -87,6 +168,32 @@ public class RuleSerializer {
         }
     }
 
+    /**
+     * Deserializes an Object straight from a buffer, without copying its content
+     *
+     * @param buffer a buffer whose remaining content is a serialized Object
+     * @return the deserialized Object
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T deserialize(ByteBuffer buffer) {
+        try {
+            ByteBuffer data = buffer.slice();
+            if (!data.hasRemaining()) {
+                return null;
+            }
+            RuleCodec c = data.remaining() >= HEADER_LENGTH ? getCodec(data.get(0), data.get(1)) : null;
+            if (c != null) {
+                data.position(HEADER_LENGTH);
+            }
+            InputStream in = new ByteBufferInputStream(data);
+            return c != null ? (T)c.decode(in) : (T)xstream.decode(in);
+        } catch (RuleException r) {
+            throw r;
+        } catch (IOException | RuntimeException e) {
+            throw new RuleException("Failed to deserialize object", e);
+        }
+    }
+
     /**
      * Deserializes an Object from an XML String
      *
@@ -96,27 +203,67 @@ public class RuleSerializer {
     @SuppressWarnings("unchecked")
     public static <T> T deserialize(String s) {
         try {
-            return StringUtils.isNotEmpty(s) ? (T)xstream.fromXML(s) : null;
+            return StringUtils.isNotEmpty(s) ? (T)xstream.fromXml(s) : null;
         } catch (RuntimeException e) {
             throw new RuleException("Failed to deserialize object", e);
         }
     }
 
-    private static byte[] compress(String s) throws IOException {
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            OutputStream out = new DeflaterOutputStream(os);
-            out.write(s.getBytes(StandardCharsets.UTF_8));
-            out.close();
-            return os.toByteArray();
+    /**
+     * Finds the codec for a blob from its header
+     *
+     * @return the codec, or null for legacy blobs without a header
+     */
+    private static RuleCodec getCodec(byte[] bytes) {
+        return bytes.length < HEADER_LENGTH ? null : getCodec(bytes[0], bytes[1]);
+    }
+
+    private static RuleCodec getCodec(byte marker, byte format) {
+        if (marker != MARKER) {
+            return null;
+        }
+        RuleCodec c = codecs.get(format);
+        if (c == null) {
+            throw new RuleException("Unknown serialization format " + format);
         }
+        return c;
+    }
+
+    private static InputStream body(byte[] bytes) {
+        return new ByteArrayInputStream(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
     }
 
-    private static String decompress(byte[] bytes) throws IOException {
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            OutputStream out = new InflaterOutputStream(os);
-            out.write(bytes);
-            out.close();
-            return new String(os.toByteArray(), StandardCharsets.UTF_8);
+    /**
+     * An InputStream reading the remaining content of a buffer
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            } else if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
         }
     }
 }
@@ -0,0 +1,59 @@
+package com.example.rules.core.repository.codec;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+import com.esotericsoftware.kryo.util.Pool;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compact binary codec based on Kryo
+ * <p>Classes need neither be registered nor implement Serializable, and may lack a no-arg constructor.
+ * Kryo instances are not thread-safe, so they are pooled.</p>
+ */
+public class KryoCodec implements RuleCodec {
+
+    public static final byte FORMAT = 2;
+
+    private final Pool<Kryo> pool = new Pool<Kryo>(true, false, 32) {
+        @Override
+        protected Kryo create() {
+            Kryo kryo = new Kryo();
+            kryo.setRegistrationRequired(false);
+            kryo.setReferences(true);
+            kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+            return kryo;
+        }
+    };
+
+    @Override
+    public byte getFormat() {
+        return FORMAT;
+    }
+
+    @Override
+    public void encode(Object o, OutputStream out) {
+        Kryo kryo = pool.obtain();
+        try {
+            Output output = new Output(out);
+            kryo.writeClassAndObject(output, o);
+            output.flush();
+        } finally {
+            pool.free(kryo);
+        }
+    }
+
+    @Override
+    public Object decode(InputStream in) {
+        Kryo kryo = pool.obtain();
+        try {
+            return kryo.readClassAndObject(new Input(in));
+        } finally {
+            pool.free(kryo);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.rules.core.repository.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encodes objects to, and decodes objects from, the binary blobs stored by the RuleSerializer
+ * <p>Each codec is identified by a format byte, written in the blob header so that blobs
+ * remain readable when the configured codec changes.</p>
+ */
+public interface RuleCodec {
+
+    /**
+     * Returns the format identifier of this codec, unique among codecs
+     */
+    byte getFormat();
+
+    /**
+     * Encodes an object to a stream
+     *
+     * @param o   the object to encode
+     * @param out the stream to write to
+     */
+    void encode(Object o, OutputStream out) throws IOException;
+
+    /**
+     * Decodes an object from a stream
+     *
+     * @param in the stream to read from
+     * @return the decoded object
+     */
+    Object decode(InputStream in) throws IOException;
+}
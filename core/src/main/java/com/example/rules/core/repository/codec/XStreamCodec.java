@@ -0,0 +1,66 @@
+package com.example.rules.core.repository.codec;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.security.AnyTypePermission;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A codec storing objects as compressed XStream XML
+ */
+public class XStreamCodec implements RuleCodec {
+
+    public static final byte FORMAT = 1;
+
+    private final XStream xstream;
+
+    public XStreamCodec() {
+        xstream = new XStream();
+        xstream.addPermission(AnyTypePermission.ANY);
+    }
+
+    @Override
+    public byte getFormat() {
+        return FORMAT;
+    }
+
+    /**
+     * Serializes an Object to an XML string
+     */
+    public String toXml(Object o) {
+        return xstream.toXML(o);
+    }
+
+    /**
+     * Deserializes an Object from an XML String
+     */
+    public Object fromXml(String s) {
+        return xstream.fromXML(s);
+    }
+
+    @Override
+    public void encode(Object o, OutputStream out) throws IOException {
+        DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+        Writer writer = new OutputStreamWriter(deflater, StandardCharsets.UTF_8);
+        xstream.toXML(o, writer);
+        writer.flush();
+        deflater.finish();
+    }
+
+    @Override
+    public Object decode(InputStream in) throws IOException {
+        return xstream.fromXML(new InputStreamReader(new InflaterInputStream(in), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decompresses an encoded blob to its XML representation
+     */
+    public String decodeAsString(InputStream in) throws IOException {
+        try (InputStream inflater = new InflaterInputStream(in)) {
+            return new String(inflater.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -1,25 +1,61 @@
 package com.example.rules.core.session;
 
 import com.example.rules.spi.session.RuleSession;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+/**
+ * A RuleSession spanning several sub-sessions, which all receive the same facts and globals
+ * <p>When an Executor is provided, sub-sessions are fired concurrently.  This is only safe when the
+ * sub-sessions are independent, i.e. their rules do not modify shared facts or globals.</p>
+ */
 @Slf4j
-@RequiredArgsConstructor
 public class CompoundSession implements RuleSession {
 
     private final Collection<? extends RuleSession> sessions;
+    private final Executor executor;
+
+    private volatile boolean halted;
+
+    public CompoundSession(Collection<? extends RuleSession> sessions) {
+        this(sessions, null);
+    }
+
+    /**
+     * @param sessions the sub-sessions
+     * @param executor the Executor used to fire sub-sessions in parallel, or null to fire them sequentially
+     */
+    public CompoundSession(Collection<? extends RuleSession> sessions, Executor executor) {
+        this.sessions = sessions;
+        this.executor = executor;
+    }
 
     @Override
     public <F> void insert(F fact) {
         sessions.forEach(s -> s.insert(fact));
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public <F> void insertAll(Iterable<F> facts) {
+        // Materialize once, so that single-use Iterables can be fanned out to every sub-session
+        Collection<F> collection;
+        if (facts instanceof Collection) {
+            collection = (Collection<F>)facts;
+        } else {
+            collection = new ArrayList<>();
+            facts.forEach(collection::add);
+        }
+        sessions.forEach(s -> s.insertAll(collection));
+    }
+
     @Override
     public <T> Stream<T> getFacts(Class<T> factClass) {
         return sessions.stream().flatMap(session -> session.getFacts(factClass));
@@ -42,9 +78,45 @@ public class CompoundSession implements RuleSession {
 
     @Override
     public int runRules() {
-        return sessions.stream()
-                .mapToInt(RuleSession::runRules)
-                .sum();
+        if (executor == null || sessions.size() < 2) {
+            return sessions.stream()
+                    .mapToInt(this::fire)
+                    .sum();
+        }
+
+        // Fire all but the first sub-session on the executor, and the first on the calling thread
+        Iterator<? extends RuleSession> iterator = sessions.iterator();
+        RuleSession first = iterator.next();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>(sessions.size() - 1);
+        try {
+            iterator.forEachRemaining(session -> futures.add(CompletableFuture.supplyAsync(() -> fire(session), executor)));
+            int count = fire(first);
+            for (CompletableFuture<Integer> future : futures) {
+                count += future.join();
+            }
+            return count;
+        } catch (RuntimeException e) {
+            // Stop the remaining sub-sessions, and wait for them to return before propagating the failure, as closing
+            // a sub-session still firing would hand it back to the pool while in use
+            halt();
+            futures.forEach(CompoundSession::await);
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            throw cause instanceof RuntimeException ? (RuntimeException)cause : e;
+        }
+    }
+
+    @SuppressWarnings("squid:S1166")
+    private static void await(CompletableFuture<Integer> future) {
+        try {
+            future.join();
+        } catch (RuntimeException e) {
+            // Only the first failure is propagated
+        }
+    }
+
+    private int fire(RuleSession session) {
+        // A halt requested before a sub-session starts firing must still stop it
+        return halted ? 0 : session.runRules();
     }
 
     @Override
@@ -54,6 +126,7 @@ public class CompoundSession implements RuleSession {
 
     @Override
     public void halt() {
+        halted = true;
         sessions.forEach(RuleSession::halt);
     }
 
@@ -67,6 +140,11 @@ public class CompoundSession implements RuleSession {
         return sessions.stream().mapToLong(RuleSession::getFactCount).sum();
     }
 
+    @Override
+    public long getFactCount(Class<?> factClass) {
+        return sessions.stream().mapToLong(session -> session.getFactCount(factClass)).sum();
+    }
+
     @Override
     public void setLogger(Logger log) {
         sessions.forEach(session -> session.setLogger(log));
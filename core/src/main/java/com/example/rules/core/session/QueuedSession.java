@@ -0,0 +1,211 @@
+package com.example.rules.core.session;
+
+import com.example.rules.spi.session.RuleSession;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.EventListener;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A RuleSession decorator allowing concurrent fact insertion into a session which is not thread-safe
+ * <p>Producers append facts to a lock-free queue, bounded by a count of permits so that producers block
+ * when the queue is full. Facts are drained into the target session in batches by a single consumer at a time:
+ * whichever producer wins the drain lock, so no dedicated thread is needed. Operations reading or changing the
+ * target session take the same lock, blocking until the current batch is inserted, and drain the queue before
+ * being delegated.</p>
+ */
+public class QueuedSession implements RuleSession {
+
+    private final RuleSession target;
+    private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+    private final Semaphore permits;
+    private final int batchSize;
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    /**
+     * @param target    the session receiving the facts
+     * @param capacity  the maximum count of facts queued before producers block
+     * @param batchSize the maximum count of facts inserted into the target session at once
+     */
+    public QueuedSession(RuleSession target, int capacity, int batchSize) {
+        this.target = target;
+        this.permits = new Semaphore(Math.max(1, capacity));
+        this.batchSize = Math.max(1, Math.min(batchSize, capacity));
+    }
+
+    @Override
+    public <F> void insert(F fact) {
+        acquire(1);
+        queue.offer(fact);
+        tryDrain();
+    }
+
+    @Override
+    public <F> void insertAll(Iterable<F> facts) {
+        List<F> chunk = new ArrayList<>(batchSize);
+        for (F fact : facts) {
+            chunk.add(fact);
+            if (chunk.size() == batchSize) {
+                enqueue(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            enqueue(chunk);
+        }
+    }
+
+    private <F> void enqueue(List<F> chunk) {
+        acquire(chunk.size());
+        queue.addAll(chunk);
+        tryDrain();
+    }
+
+    private void acquire(int count) {
+        try {
+            permits.acquire(count);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while queueing facts");
+        }
+    }
+
+    /**
+     * Drains the queue into the target session if no other thread is doing so
+     */
+    private void tryDrain() {
+        while (!queue.isEmpty() && drainLock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                drainLock.unlock();
+            }
+            // Re-check the queue, facts offered while the lock was held may otherwise be stranded
+        }
+    }
+
+    private void drain() {
+        List<Object> batch = new ArrayList<>(batchSize);
+        Object fact;
+        while ((fact = queue.poll()) != null) {
+            batch.add(fact);
+            if (batch.size() == batchSize) {
+                insertBatch(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            insertBatch(batch);
+        }
+    }
+
+    private void insertBatch(List<Object> batch) {
+        try {
+            target.insertAll(batch);
+        } finally {
+            permits.release(batch.size());
+        }
+    }
+
+    /**
+     * Waits until all queued facts have been inserted into the target session
+     */
+    public void flush() {
+        exclusive(() -> null);
+    }
+
+    /**
+     * Runs an operation on the target session once all queued facts have been inserted into it
+     * <p>Blocks while another thread drains the queue, and keeps producers from draining until the operation
+     * returns.</p>
+     */
+    private <T> T exclusive(Supplier<T> operation) {
+        drainLock.lock();
+        try {
+            drain();
+            return operation.get();
+        } finally {
+            drainLock.unlock();
+            tryDrain();
+        }
+    }
+
+    @Override
+    public <T> Stream<T> getFacts(Class<T> factClass) {
+        // Collected while holding the lock, as the target stream may be lazy
+        return exclusive(() -> target.getFacts(factClass).collect(Collectors.toList())).stream();
+    }
+
+    @Override
+    public Stream<Object[]> query(String queryId, String[] objectNames, Object... arguments) {
+        return exclusive(() -> target.query(queryId, objectNames, arguments).collect(Collectors.toList())).stream();
+    }
+
+    @Override
+    public void setGlobal(String identifier, Object value) {
+        exclusive(() -> {
+            target.setGlobal(identifier, value);
+            return null;
+        });
+    }
+
+    @Override
+    public <T> T getGlobal(String identifier) {
+        return target.getGlobal(identifier);
+    }
+
+    @Override
+    public int runRules() {
+        return exclusive(target::runRules);
+    }
+
+    @Override
+    public void halt() {
+        target.halt();
+    }
+
+    @Override
+    public int getRuleCount() {
+        return target.getRuleCount();
+    }
+
+    @Override
+    public long getFactCount() {
+        return exclusive(target::getFactCount);
+    }
+
+    @Override
+    public long getFactCount(Class<?> factClass) {
+        return exclusive(() -> target.getFactCount(factClass));
+    }
+
+    @Override
+    public void setLogger(Logger log) {
+        target.setLogger(log);
+    }
+
+    @Override
+    public Map<String, Integer> getRuleHistogram() {
+        return target.getRuleHistogram();
+    }
+
+    @Override
+    public <E extends EventListener> void addEventListener(E listener) {
+        target.addEventListener(listener);
+    }
+
+    @Override
+    public void close() {
+        target.close();
+    }
+}
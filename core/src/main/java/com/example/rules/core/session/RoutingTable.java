@@ -0,0 +1,185 @@
+package com.example.rules.core.session;
+
+import com.example.rules.api.RuleException;
+import com.example.rules.spi.session.RuleContainer;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An immutable table routing session IDs to the containers providing them
+ * <p>A table is never modified, each change building a new version of it, so that it can be read without locking.
+ * Sessions not provided by any registered container are routed to the default container.</p>
+ * <p>A container may have a canary, a new version of it receiving a percentage of the requests for the sessions it
+ * provides, the remaining requests being routed as if the canary was not registered.</p>
+ */
+final class RoutingTable {
+
+    @Getter private final long version;
+    @Getter private final String release;
+    private final RuleContainer defaultContainer;
+    /**
+     * Registrations by lower case container ID, in registration order
+     */
+    private final Map<String, Registration> registrations;
+    private final Map<String, Route> routes;
+
+    RoutingTable(RuleContainer defaultContainer) {
+        this(0, defaultContainer, Collections.emptyMap());
+    }
+
+    private RoutingTable(long version, RuleContainer defaultContainer, Map<String, Registration> registrations) {
+        this.version = version;
+        this.defaultContainer = defaultContainer;
+        this.registrations = registrations;
+
+        // Later registrations take precedence for sessions provided by several containers
+        Map<String, Route> map = new HashMap<>();
+        registrations.values().forEach(r -> r.sessions.forEach(id -> map.put(id, new Route(r.container, null, 0))));
+        registrations.values().stream()
+                .filter(r -> r.canary != null)
+                .forEach(r -> r.canarySessions.forEach(id -> {
+                    Route route = map.get(id);
+                    map.put(id, new Route(route != null ? route.primary : defaultContainer, r.canary, r.canaryWeight));
+                }));
+        routes = Collections.unmodifiableMap(map);
+
+        release = getContainers()
+                .map(RuleContainer::getRelease)
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Finds the container a session is routed to
+     *
+     * @param sessionId the session ID
+     * @param bucket    the bucket of the request, from 0 to 99, routed to a canary if lower than its weight
+     * @return a registered container, or the default container if no other container provides the session
+     */
+    RuleContainer route(String sessionId, int bucket) {
+        Route route = routes.get(sessionId);
+        if (route == null) {
+            return defaultContainer;
+        }
+        return route.canary != null && bucket < route.weight ? route.canary : route.primary;
+    }
+
+    /**
+     * Returns all containers of this table, default and canary containers included
+     */
+    Stream<RuleContainer> getContainers() {
+        return Stream.concat(Stream.of(defaultContainer), registrations.values().stream()
+                        .flatMap(r -> Stream.of(r.container, r.canary)))
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Returns a table routing the sessions of a container to it, in place of any container with the same ID
+     * <p>A canary of the replaced container is kept.</p>
+     */
+    RoutingTable withContainer(RuleContainer container) {
+        Registration previous = registrations.get(key(container.getId()));
+        Registration registration = previous != null
+                ? new Registration(container, previous.canary, previous.canarySessions, previous.canaryWeight)
+                : new Registration(container, null, Collections.emptySet(), 0);
+        return with(container.getId(), registration);
+    }
+
+    /**
+     * Returns a table without the container with the given ID, nor its canary
+     */
+    RoutingTable withoutContainer(String id) {
+        return with(id, null);
+    }
+
+    /**
+     * Returns a table routing a percentage of the requests for the sessions of a canary to it
+     *
+     * @param canary the new version of a container
+     * @param weight the percentage of requests routed to the canary
+     */
+    RoutingTable withCanary(RuleContainer canary, int weight) {
+        if (weight < 0 || weight > 100) {
+            throw new IllegalArgumentException("Canary weight must be a percentage, not " + weight);
+        }
+        Registration previous = registrations.get(key(canary.getId()));
+        RuleContainer container = previous != null ? previous.container : null;
+        return with(canary.getId(), new Registration(container, canary, canary.getProvidedSessions(), weight));
+    }
+
+    /**
+     * Returns a table routing all requests to the canary of a container, in place of the container
+     */
+    RoutingTable withCanaryPromoted(String id) {
+        Registration previous = registrations.get(key(id));
+        if (previous == null || previous.canary == null) {
+            throw new RuleException("Container '" + id + "' has no canary to promote");
+        }
+        return with(id, new Registration(previous.canary, null, Collections.emptySet(), 0));
+    }
+
+    /**
+     * Returns a table routing all requests back to a container, without its canary
+     */
+    RoutingTable withoutCanary(String id) {
+        Registration previous = registrations.get(key(id));
+        if (previous == null || previous.canary == null) {
+            return this;
+        }
+        return with(id, previous.container != null ? new Registration(previous.container, null, Collections.emptySet(), 0) : null);
+    }
+
+    private RoutingTable with(String id, Registration registration) {
+        Map<String, Registration> map = new LinkedHashMap<>(registrations);
+        map.remove(key(id));
+        if (registration != null) {
+            map.put(key(id), registration);
+        }
+        return new RoutingTable(version + 1, defaultContainer, Collections.unmodifiableMap(map));
+    }
+
+    private static String key(String id) {
+        return id.toLowerCase();
+    }
+
+    @Override
+    public String toString() {
+        return "RoutingTable{version=" + version + ", release=" + release + '}';
+    }
+
+    /**
+     * A registered container and its canary, either of which may be null
+     */
+    private static final class Registration {
+
+        private final RuleContainer container;
+        private final Set<String> sessions;
+        private final RuleContainer canary;
+        private final Set<String> canarySessions;
+        private final int canaryWeight;
+
+        Registration(RuleContainer container, RuleContainer canary, Set<String> canarySessions, int canaryWeight) {
+            this.container = container;
+            this.sessions = container != null ? Set.copyOf(container.getProvidedSessions()) : Collections.emptySet();
+            this.canary = canary;
+            this.canarySessions = Set.copyOf(canarySessions);
+            this.canaryWeight = canaryWeight;
+        }
+    }
+
+    private static final class Route {
+
+        private final RuleContainer primary;
+        private final RuleContainer canary;
+        private final int weight;
+
+        Route(RuleContainer primary, RuleContainer canary, int weight) {
+            this.primary = primary;
+            this.canary = canary;
+            this.weight = weight;
+        }
+    }
+}
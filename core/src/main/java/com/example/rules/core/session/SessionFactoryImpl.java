@@ -6,10 +6,23 @@ import com.example.rules.core.drools.DroolsContainer;
 import com.example.rules.spi.session.*;
 import lombok.extern.slf4j.Slf4j;
 import org.kie.api.KieServices;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -17,46 +30,233 @@ import java.util.stream.Stream;
 @Component
 public class SessionFactoryImpl implements SessionFactory {
 
-    private final Map<RuleContainer, Set<String>> containers = new ConcurrentHashMap<>();
     private final Map<Class<? extends RuleRequest>, Set<String>> registeredSessions = new ConcurrentHashMap<>();
-    private final RuleContainer defaultContainer;
+    private final DroolsContainer defaultContainer;
 
-    public SessionFactoryImpl() {
-        defaultContainer = new DroolsContainer(KieServices.get().getKieClasspathContainer());
+    private final CompletableFuture<Void> warmUp = new CompletableFuture<>();
+    private final AtomicBoolean warmUpStarted = new AtomicBoolean();
+
+    /**
+     * Session routing, replaced as a whole on each registration so that lookups never lock nor see a partial update
+     */
+    private volatile RoutingTable routing;
+    private AsyncTaskExecutor ruleExecutor;
+    private List<SessionWarmup> warmups = Collections.emptyList();
+    private boolean warmUpEnabled = true;
+    private int warmUpThreads;
+    private int warmUpRuns = 100;
+
+    public SessionFactoryImpl(@Value("${session.pool.size:8}") int poolSize,
+                              @Value("${session.pool.idle.timeout:300000}") long poolIdleTimeout) {
+        // Rule modules built by the kie-maven-plugin carry their executable model, loaded as is rather than compiled from DRL
+        defaultContainer = new DroolsContainer(KieServices.get().getKieClasspathContainer(), poolSize, poolIdleTimeout);
+        routing = new RoutingTable(defaultContainer);
     }
 
-    @Override
-    public synchronized void registerContainer(RuleContainer container) {
-        containers.remove(container);
-        containers.put(container, Collections.emptySet());
-        String id = container.getId();
-        log.info("Registered container '" + id + "'");
-        registerContainerSessions(container);
+    /**
+     * Sets the executor used to fire the sub-sessions of a request in parallel
+     * <p>Only available when {@code executor.rules.parallel} is enabled</p>
+     */
+    @Autowired(required = false)
+    @Qualifier("rulePool")
+    public void setRuleExecutor(AsyncTaskExecutor ruleExecutor) {
+        this.ruleExecutor = ruleExecutor;
     }
 
-    @Override
-    public synchronized void deregisterContainer(String id) {
-        containers.keySet().stream()
-                .filter(c -> id.equalsIgnoreCase(c.getId()))
-                .findAny()
-                .ifPresent(containers::remove);
+    /**
+     * Sets the synthetic runs fired to warm up sessions at startup
+     */
+    @Autowired(required = false)
+    public void setWarmups(List<SessionWarmup> warmups) {
+        this.warmups = warmups;
+    }
 
-        log.info("De-registered container '" + id + "'");
+    /**
+     * Whether rules are built and sessions warmed up at startup, rather than on their first request
+     */
+    @Value("${session.warmup.enabled:true}")
+    public void setWarmUpEnabled(boolean warmUpEnabled) {
+        this.warmUpEnabled = warmUpEnabled;
+    }
+
+    /**
+     * Sets the count of threads warming up sessions, 0 for one per processor
+     */
+    @Value("${session.warmup.threads:0}")
+    public void setWarmUpThreads(int warmUpThreads) {
+        this.warmUpThreads = warmUpThreads;
+    }
+
+    /**
+     * Sets the count of synthetic runs fired for each session with a SessionWarmup
+     */
+    @Value("${session.warmup.runs:100}")
+    public void setWarmUpRuns(int warmUpRuns) {
+        this.warmUpRuns = warmUpRuns;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void onStartup() {
+        if (warmUpEnabled) {
+            warmUp();
+        } else {
+            warmUp.complete(null);
+        }
+    }
+
+    /**
+     * Warms up all provided sessions in the background, once
+     * <p>The KieBases of all sessions are built in parallel, then the synthetic runs of the registered
+     * {@link SessionWarmup SessionWarmups} are fired.  Sessions may be requested meanwhile, at the cost of building
+     * their KieBase and running cold.</p>
+     *
+     * @return a future completing once all sessions are warm, or exceptionally if any failed to build
+     */
+    public CompletableFuture<Void> warmUp() {
+        if (!warmUpStarted.compareAndSet(false, true)) {
+            return warmUp;
+        }
+
+        int threads = warmUpThreads > 0 ? warmUpThreads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("Warmup");
+        executor.setDaemon(true);
+        executor.initialize();
+
+        long start = System.currentTimeMillis();
+        CompletableFuture<?>[] builds = routing.getContainers()
+                .flatMap(c -> c.getProvidedSessions().stream()
+                        .map(id -> CompletableFuture.runAsync(() -> c.prepareSession(id), executor)))
+                .toArray(CompletableFuture[]::new);
+
+        CompletableFuture.allOf(builds)
+                .thenCompose(v -> {
+                    log.info("Built rules of " + builds.length + " sessions in " + (System.currentTimeMillis() - start) + " ms");
+                    return runWarmups(executor);
+                })
+                .whenComplete((v, e) -> {
+                    executor.shutdown();
+                    if (e != null) {
+                        log.error("Failed to build rules", e);
+                        warmUp.completeExceptionally(e);
+                    } else {
+                        log.info("Sessions warmed up in " + (System.currentTimeMillis() - start) + " ms");
+                        warmUp.complete(null);
+                    }
+                });
+        return warmUp;
+    }
+
+    /**
+     * Returns whether all sessions have been warmed up successfully
+     */
+    public boolean isWarm() {
+        return warmUp.isDone() && !warmUp.isCompletedExceptionally();
+    }
+
+    private CompletableFuture<Void> runWarmups(Executor executor) {
+        CompletableFuture<?>[] runs = warmups.stream()
+                .flatMap(w -> w.getSessionIds().stream()
+                        .map(id -> CompletableFuture.runAsync(() -> runWarmup(w, id), executor)))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(runs);
+    }
+
+    /**
+     * Fires the synthetic runs of a session, a failure only cutting its warm-up short
+     */
+    private void runWarmup(SessionWarmup warmup, String sessionId) {
+        try {
+            for (int i = 0; i < warmUpRuns; ++i) {
+                RuleSession session = getSession(sessionId, false);
+                if (session == null) {
+                    log.warn("Unknown rules session '" + sessionId + "' to warm up");
+                    return;
+                }
+                try {
+                    warmup.prepare(session);
+                    session.runRules();
+                } finally {
+                    session.close();
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to warm up session '" + sessionId + "'", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        defaultContainer.close();
     }
 
     /**
-     * Registers sessions contained within a RulesContainer.
+     * Registers a container, replacing any container registered with the same ID
+     * <p>Requests are switched to the new container at once, sessions in use on a replaced container running to
+     * completion on it before it is retired.  The container should be fully built beforehand, as this only blocks
+     * other registrations.</p>
      *
      * @param container the RulesContainer
      */
-    private void registerContainerSessions(RuleContainer container) {
-        Set<String> sessions = container.getProvidedSessions();
+    @Override
+    public void registerContainer(RuleContainer container) {
+        update(table -> table.withContainer(container));
+        log.info("Registered container '" + container.getRelease() + "', provides sessions " + container.getProvidedSessions());
+    }
+
+    @Override
+    public void deregisterContainer(String id) {
+        update(table -> table.withoutContainer(id));
+        log.info("De-registered container '" + id + "'");
+    }
+
+    @Override
+    public void registerCanary(RuleContainer canary, int weight) {
+        update(table -> table.withCanary(canary, weight));
+        log.info("Registered canary '" + canary.getRelease() + "', receiving " + weight + "% of requests for sessions " + canary.getProvidedSessions());
+    }
+
+    @Override
+    public void promoteCanary(String id) {
+        update(table -> table.withCanaryPromoted(id));
+        log.info("Promoted canary of container '" + id + "'");
+    }
+
+    @Override
+    public void deregisterCanary(String id) {
+        update(table -> table.withoutCanary(id));
+        log.info("De-registered canary of container '" + id + "'");
+    }
+
+    /**
+     * Returns the version of the session routing, incremented on each registration
+     */
+    public long getRoutingVersion() {
+        return routing.getVersion();
+    }
 
-        if (containers.containsKey(container)) {
-            // Protect against cases where a container has been de-registered but the update worker is still running
-            containers.put(container, sessions);
-            log.info("Rules container '" + container.getId() + "' available, provides sessions " + sessions);
+    /**
+     * Replaces the routing table, retiring the containers it no longer routes to
+     * <p>Only blocks concurrent registrations, containers should be fully built beforehand.</p>
+     */
+    private synchronized void update(UnaryOperator<RoutingTable> change) {
+        RoutingTable previous = routing;
+        RoutingTable next = change.apply(previous);
+        if (next == previous) {
+            return;
         }
+        routing = next;
+
+        Set<RuleContainer> current = Collections.newSetFromMap(new IdentityHashMap<>());
+        next.getContainers().forEach(current::add);
+        previous.getContainers()
+                .filter(c -> !current.contains(c))
+                .forEach(c -> {
+                    log.info("Retiring container '" + c.getRelease() + "'");
+                    c.retire();
+                });
     }
 
     /**
@@ -117,10 +317,21 @@ public class SessionFactoryImpl implements SessionFactory {
         return getSession(sessionIds);
     }
 
+    @Override
+    public <R extends RuleRequest> RuleSession getStatelessSession(R request, String... ruleSets) {
+        Set<String> sessionIds = new HashSet<>(Arrays.asList(ruleSets));
+        sessionIds.addAll(getRegisteredSessions(request.getClass()));
+        return getSession(sessionIds, true);
+    }
+
+    @Override
+    public String getRelease() {
+        return routing.getRelease();
+    }
+
     @Override
     public Stream<RuleInfo> getRuleInfo() {
-        return Stream.concat(Stream.of(defaultContainer), containers.keySet().stream())
-                .flatMap(RuleContainer::getRuleInfo);
+        return routing.getContainers().flatMap(RuleContainer::getRuleInfo);
     }
 
     @Override
@@ -129,10 +340,15 @@ public class SessionFactoryImpl implements SessionFactory {
     }
 
     public RuleSession getSession(Collection<String> sessionIds) {
-        // Search for the session IDs in the defined containers
+        return getSession(sessionIds, false);
+    }
+
+    public RuleSession getSession(Collection<String> sessionIds, boolean stateless) {
+        // All sessions of a request are routed to the same side of any canary
+        int bucket = ThreadLocalRandom.current().nextInt(100);
         List<RuleSession> sessions = sessionIds.stream()
                 .map(id -> {
-                    RuleSession session = getSession(id);
+                    RuleSession session = getSession(id, stateless, bucket);
                     if (session == null) {
                         log.error("Unknown rules session '" + id + "'");
                     }
@@ -141,30 +357,38 @@ public class SessionFactoryImpl implements SessionFactory {
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
 
-        return new CompoundSession(sessions);
+        return new CompoundSession(sessions, ruleExecutor);
     }
 
     /**
      * Finds a session matching the given ID in the known containers
      *
      * @param sessionId the session ID
+     * @param stateless whether a stateless session is requested
      * @return a new RulesSession
      */
-    RuleSession getSession(String sessionId) {
-        return getContainer(sessionId).newSession(sessionId);
+    RuleSession getSession(String sessionId, boolean stateless) {
+        return getSession(sessionId, stateless, ThreadLocalRandom.current().nextInt(100));
     }
 
     /**
-     * Finds a container that provides the given session
+     * Creates a session from the container it is routed to
      *
      * @param sessionId the session ID
-     * @return a registered container, or the classpath container if no other container provides the session
-     */
-    private RuleContainer getContainer(String sessionId) {
-        return containers.entrySet().stream()
-                .filter(e -> e.getValue().contains(sessionId))
-                .map(Map.Entry::getKey)
-                .findAny()
-                .orElse(defaultContainer);
+     * @param stateless whether a stateless session is requested
+     * @param bucket    the bucket of the request, from 0 to 99, selecting canary containers
+     * @return a new RulesSession
+     */
+    private RuleSession getSession(String sessionId, boolean stateless, int bucket) {
+        RuleContainer container = routing.route(sessionId, bucket);
+        while (true) {
+            RuleSession session = stateless ? container.newStatelessSession(sessionId) : container.newSession(sessionId);
+            RuleContainer current = session == null ? routing.route(sessionId, bucket) : container;
+            if (current == container) {
+                return session;
+            }
+            // The container was retired between the lookup and the session creation, retry on its replacement
+            container = current;
+        }
     }
 }
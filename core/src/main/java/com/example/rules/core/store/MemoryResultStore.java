@@ -0,0 +1,136 @@
+package com.example.rules.core.store;
+
+import com.example.rules.api.RuleException;
+import com.example.rules.core.repository.codec.KryoCodec;
+import com.example.rules.spi.store.ResultStore;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A bounded in-memory ResultStore
+ * <p>Results are held in serialized form, so that stored results are isolated from later changes, and weighed
+ * by their serialized size against a memory budget. They never leave the JVM, so they are always encoded with
+ * Kryo, whatever the codec configured for the RuleSerializer, and without a format header. Eviction follows Caffeine's frequency and recency based
+ * policy, and results expire a fixed time after being saved. Reads never block.</p>
+ * <p>Enabled with {@code result.store=memory}.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "result.store", havingValue = "memory")
+public class MemoryResultStore implements ResultStore {
+
+    private final Cache<Long, byte[]> cache;
+    private final KryoCodec codec = new KryoCodec();
+    private final boolean compress;
+
+    /**
+     * @param maxSize  the maximum total size in bytes of the stored results
+     * @param ttl      the time in ms a result is kept after being saved
+     * @param compress whether to compress the Kryo encoded results, trading CPU for memory
+     */
+    public MemoryResultStore(@Value("${result.store.memory.size:67108864}") long maxSize,
+                             @Value("${result.store.memory.ttl:3600000}") long ttl,
+                             @Value("${result.store.memory.compress:false}") boolean compress) {
+        this.compress = compress;
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((Long id, byte[] data) -> data.length)
+                .expireAfterWrite(Duration.ofMillis(ttl))
+                .recordStats()
+                .build();
+        log.info("In-memory result store enabled, size " + maxSize + " bytes, TTL " + ttl + " ms");
+    }
+
+    @Override
+    public <T extends Serializable> void save(long ruleId, T result) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream(256);
+        try (OutputStream out = compress ? new DeflaterOutputStream(os) : os) {
+            codec.encode(result, out);
+        } catch (IOException | RuntimeException e) {
+            throw new RuleException("Failed to store result " + result.getClass().getName(), e);
+        }
+        cache.put(ruleId, os.toByteArray());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends Serializable> T load(long ruleId) {
+        byte[] data = cache.getIfPresent(ruleId);
+        if (data == null) {
+            return null;
+        }
+        InputStream bytes = new ByteArrayInputStream(data);
+        try (InputStream in = compress ? new InflaterInputStream(bytes) : bytes) {
+            return (T)codec.decode(in);
+        } catch (IOException | RuntimeException e) {
+            throw new RuleException("Failed to load result " + ruleId, e);
+        }
+    }
+
+    @Override
+    public boolean contains(long ruleId) {
+        return cache.asMap().containsKey(ruleId);
+    }
+
+    /**
+     * Returns the count of stored results
+     */
+    public long getCount() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Returns the total size in bytes of the stored results
+     */
+    public long getWeight() {
+        return cache.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    public long getHits() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMisses() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * Returns the count of results evicted because of the size budget or expiry
+     */
+    public long getEvictions() {
+        return cache.stats().evictionCount();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Removes all stored results
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Performs pending evictions immediately, they otherwise run asynchronously
+     */
+    void cleanUp() {
+        cache.cleanUp();
+    }
+}
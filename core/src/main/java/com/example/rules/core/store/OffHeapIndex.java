@@ -0,0 +1,174 @@
+package com.example.rules.core.store;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongPredicate;
+
+/**
+ * An open-addressing hash table from run ID to record location, held in a direct buffer
+ * <p>Each slot holds a key and a value, keys are stored offset by one so that zero marks an empty slot.
+ * Reads are optimistic and only fall back to a read lock when a write happened concurrently; writes are
+ * serialized. Entries are never removed individually, {@link #retain(LongPredicate)} rebuilds the table instead.</p>
+ */
+class OffHeapIndex {
+
+    static final long NOT_FOUND = -1;
+
+    private static final int SLOT_SIZE = 16;
+    private static final long EMPTY = 0;
+
+    private final StampedLock lock = new StampedLock();
+    private ByteBuffer table;
+    private int size;
+
+    /**
+     * @param capacity the initial count of slots, rounded up to a power of two
+     */
+    OffHeapIndex(int capacity) {
+        allocate(Math.max(16, Integer.highestOneBit(Math.max(1, capacity) - 1) << 1));
+    }
+
+    private void allocate(int slots) {
+        table = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+        size = 0;
+    }
+
+    /**
+     * Returns the location for a run ID, or {@link #NOT_FOUND}
+     */
+    long get(long ruleId) {
+        long stamp = lock.tryOptimisticRead();
+        long location = find(table, ruleId);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                location = find(table, ruleId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return location;
+    }
+
+    /**
+     * Sets the location for a run ID
+     *
+     * @return the previous location, or {@link #NOT_FOUND}
+     */
+    long put(long ruleId, long location) {
+        long stamp = lock.writeLock();
+        try {
+            int slots = slots(table);
+            if ((size + 1) * 2 > slots) {
+                resize(slots * 2, l -> true);
+            }
+            return insert(ruleId, location);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Sets the location for a run ID, only if it is currently mapped to the expected location
+     */
+    boolean replace(long ruleId, long expected, long location) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotOf(table, ruleId);
+            if (table.getLong(slot + 8) != expected || table.getLong(slot) == EMPTY) {
+                return false;
+            }
+            table.putLong(slot + 8, location);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Rebuilds the table, keeping only the entries whose location matches a predicate
+     */
+    void retain(LongPredicate predicate) {
+        long stamp = lock.writeLock();
+        try {
+            resize(slots(table), predicate);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long insert(long ruleId, long location) {
+        int slot = slotOf(table, ruleId);
+        long previous = table.getLong(slot) == EMPTY ? NOT_FOUND : table.getLong(slot + 8);
+        table.putLong(slot + 8, location);
+        if (previous == NOT_FOUND) {
+            table.putLong(slot, ruleId + 1);
+            ++size;
+        }
+        return previous;
+    }
+
+    private void resize(int slots, LongPredicate predicate) {
+        ByteBuffer old = table;
+        int oldSlots = slots(old);
+        int live = 0;
+        for (int i = 0; i < oldSlots; ++i) {
+            int slot = i * SLOT_SIZE;
+            if (old.getLong(slot) != EMPTY && predicate.test(old.getLong(slot + 8))) {
+                ++live;
+            }
+        }
+        // Keep the load factor under one half
+        while (live * 2 > slots) {
+            slots *= 2;
+        }
+        allocate(slots);
+        for (int i = 0; i < oldSlots; ++i) {
+            int slot = i * SLOT_SIZE;
+            long key = old.getLong(slot);
+            if (key != EMPTY && predicate.test(old.getLong(slot + 8))) {
+                insert(key - 1, old.getLong(slot + 8));
+            }
+        }
+    }
+
+    private static int slots(ByteBuffer table) {
+        return table.capacity() / SLOT_SIZE;
+    }
+
+    private static long find(ByteBuffer table, long ruleId) {
+        int slot = slotOf(table, ruleId);
+        return table.getLong(slot) == EMPTY ? NOT_FOUND : table.getLong(slot + 8);
+    }
+
+    /**
+     * Returns the byte offset of the slot holding a run ID, or of the empty slot where it belongs
+     * <p>The slot count is derived from the table itself, so that an optimistic read racing with a resize
+     * never indexes past the table it read.</p>
+     */
+    private static int slotOf(ByteBuffer table, long ruleId) {
+        int mask = slots(table) - 1;
+        long key = ruleId + 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int index = (int)(h ^ (h >>> 32)) & mask;
+        // The table is never more than half full, bounding the probe length guards against torn optimistic reads
+        for (int i = 0; i <= mask; ++i) {
+            int slot = index * SLOT_SIZE;
+            long k = table.getLong(slot);
+            if (k == key || k == EMPTY) {
+                return slot;
+            }
+            index = (index + 1) & mask;
+        }
+        return index * SLOT_SIZE;
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.rules.core.store;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A memory-mapped, append-only file of serialized results
+ * <p>Each record is made of its data length, run ID and save time, followed by the data. Space is reserved
+ * atomically, so concurrent appends write to disjoint regions of the mapping. The length is written negated as soon
+ * as the space is reserved, and made positive once the record is complete, so that recovery skips a record
+ * interrupted by a crash and still finds the complete records after it.</p>
+ */
+class Segment implements Closeable {
+
+    static final int RECORD_HEADER = 20;
+
+    @Getter private final int id;
+    @Getter private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final AtomicInteger position = new AtomicInteger();
+    private final AtomicInteger writers = new AtomicInteger();
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicLong lastWrite = new AtomicLong();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private volatile boolean sealed;
+
+    private Segment(int id, Path path, FileChannel channel, int capacity) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.capacity = capacity;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Creates a new, empty segment file
+     */
+    static Segment create(Path path, int id, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(id, path, channel, capacity);
+    }
+
+    /**
+     * Opens an existing segment file, counting all its complete records as live
+     * <p>The segment is sealed, no further records are appended to it. Records superseded by later ones are to be
+     * released once the segment is indexed.</p>
+     */
+    static Segment open(Path path, int id) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, path, channel, (int)Math.min(Integer.MAX_VALUE, channel.size()));
+        int end = segment.scan(segment.capacity, (offset, ruleId, time) -> {
+            segment.liveBytes.addAndGet(segment.getRecordSize(offset));
+            segment.lastWrite.accumulateAndGet(time, Math::max);
+        });
+        segment.position.set(end);
+        segment.sealed = true;
+        return segment;
+    }
+
+    /**
+     * Appends a record
+     *
+     * @return the offset of the record, or -1 if the segment is sealed or has no room left
+     */
+    int append(long ruleId, long time, ByteBuffer data) {
+        int length = data.remaining();
+        int size = RECORD_HEADER + length;
+        writers.incrementAndGet();
+        try {
+            if (sealed) {
+                return -1;
+            }
+            int offset = reserve(size);
+            if (offset >= 0) {
+                buffer.putInt(offset, -length);
+                buffer.putLong(offset + 4, ruleId);
+                buffer.putLong(offset + 12, time);
+                buffer.put(offset + RECORD_HEADER, data, data.position(), length);
+                buffer.putInt(offset, length);
+                liveBytes.addAndGet(size);
+                lastWrite.accumulateAndGet(time, Math::max);
+                dirty.set(true);
+            }
+            return offset;
+        } finally {
+            writers.decrementAndGet();
+        }
+    }
+
+    private int reserve(int size) {
+        while (true) {
+            int offset = position.get();
+            if (offset + size > capacity) {
+                return -1;
+            } else if (position.compareAndSet(offset, offset + size)) {
+                return offset;
+            }
+        }
+    }
+
+    /**
+     * Returns a view of the data of a record, without copying it
+     */
+    ByteBuffer read(int offset) {
+        return buffer.slice(offset + RECORD_HEADER, buffer.getInt(offset));
+    }
+
+    long getTime(int offset) {
+        return buffer.getLong(offset + 12);
+    }
+
+    int getRecordSize(int offset) {
+        return RECORD_HEADER + buffer.getInt(offset);
+    }
+
+    /**
+     * Reports all complete records to a visitor, only meant for sealed segments
+     */
+    void forEach(RecordVisitor visitor) {
+        scan(position.get(), visitor);
+    }
+
+    /**
+     * Reports the complete records up to an offset, skipping incomplete ones
+     *
+     * @return the end of the last record, complete or not
+     */
+    private int scan(int end, RecordVisitor visitor) {
+        int offset = 0;
+        while (offset + RECORD_HEADER <= end) {
+            int length = buffer.getInt(offset);
+            // Zero marks space never reserved, a negative length a record reserved but never completed
+            if (length == 0 || length == Integer.MIN_VALUE || offset + RECORD_HEADER + Math.abs(length) > end) {
+                break;
+            }
+            if (length > 0) {
+                visitor.visit(offset, buffer.getLong(offset + 4), buffer.getLong(offset + 12));
+            }
+            offset += RECORD_HEADER + Math.abs(length);
+        }
+        return offset;
+    }
+
+    /**
+     * Prevents further appends, appends already in progress still complete
+     */
+    void seal() {
+        sealed = true;
+    }
+
+    /**
+     * Checks whether the segment is sealed and no append is in progress, so that its records can no longer change
+     */
+    boolean isQuiescent() {
+        return sealed && writers.get() == 0;
+    }
+
+    /**
+     * Records that a record of the given size was superseded or discarded
+     */
+    void release(int size) {
+        liveBytes.addAndGet(-size);
+    }
+
+    long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    int getUsedBytes() {
+        return position.get();
+    }
+
+    long getLastWrite() {
+        return lastWrite.get();
+    }
+
+    /**
+     * Flushes the records appended since the last call to disk
+     */
+    void force() {
+        if (dirty.getAndSet(false)) {
+            buffer.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Closes and deletes the segment file
+     * <p>The mapping itself stays valid until it is garbage collected, so concurrent readers are unaffected.</p>
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    interface RecordVisitor {
+        void visit(int offset, long ruleId, long time);
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.rules.core.store;
+
+import com.example.rules.api.RuleException;
+import com.example.rules.core.repository.RuleSerializer;
+import com.example.rules.spi.store.ResultStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A persistent ResultStore made of memory-mapped, append-only segment files
+ * <p>Results are appended to the active segment, which is replaced by a new one when full, and located through
+ * an off-heap index from run ID to segment and offset, rebuilt from the segment files on startup. Results are
+ * deserialized straight from the mapping. A background task deletes segments older than the retention period,
+ * and compacts segments in which most records have been superseded by copying their remaining records to the
+ * active segment. Appended records are flushed to disk on a fixed schedule, bounding what a crash of the host
+ * may lose.</p>
+ * <p>Enabled with {@code result.store=segment}.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "result.store", havingValue = "segment")
+public class SegmentResultStore implements ResultStore {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.dat");
+    private static final double COMPACTION_RATIO = 0.5;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long retention;
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final OffHeapIndex index = new OffHeapIndex(1 << 16);
+    private final AtomicLong lastRunId = new AtomicLong();
+    private final ScheduledExecutorService maintenance;
+
+    private volatile Segment active;
+    private int nextSegmentId;
+
+    /**
+     * @param directory           the directory holding the segment files
+     * @param segmentSize         the size in bytes of each segment file
+     * @param retention           the time in ms a result is kept after being saved
+     * @param maintenanceInterval the time in ms between runs of the retention and compaction task, 0 to disable it
+     * @param flushInterval       the time in ms between flushes of appended records to disk, 0 to only flush them
+     *                            on maintenance and close
+     */
+    public SegmentResultStore(@Value("${result.store.segment.dir:${java.io.tmpdir}/rule-results}") String directory,
+                              @Value("${result.store.segment.size:67108864}") int segmentSize,
+                              @Value("${result.store.segment.retention:86400000}") long retention,
+                              @Value("${result.store.segment.maintenance.interval:60000}") long maintenanceInterval,
+                              @Value("${result.store.segment.flush.interval:1000}") long flushInterval) {
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+        this.retention = retention;
+
+        try {
+            Files.createDirectories(this.directory);
+            recover();
+            active = createSegment(segmentSize);
+        } catch (IOException e) {
+            throw new RuleException("Failed to open result store in " + directory, e);
+        }
+        log.info("Segment result store opened in " + this.directory + ", " + index.size() + " result(s) recovered");
+
+        if (maintenanceInterval > 0 || flushInterval > 0) {
+            maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ResultStoreMaintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (maintenanceInterval > 0) {
+                maintenance.scheduleWithFixedDelay(this::maintain, maintenanceInterval, maintenanceInterval, TimeUnit.MILLISECONDS);
+            }
+            if (flushInterval > 0) {
+                maintenance.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+            }
+        } else {
+            maintenance = null;
+        }
+    }
+
+    /**
+     * Maps the existing segment files and rebuilds the index, later records superseding earlier ones
+     */
+    private void recover() throws IOException {
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(p -> SEGMENT_NAME.matcher(p.getFileName().toString()).matches())
+                    .sorted((a, b) -> Integer.compare(segmentId(a), segmentId(b)))
+                    .toList();
+        }
+        for (Path path : paths) {
+            int id = segmentId(path);
+            Segment segment = Segment.open(path, id);
+            // Indexed once registered, so that records superseded within the same segment are released too
+            segments.put(id, segment);
+            segment.forEach((offset, ruleId, time) -> {
+                release(index.put(ruleId, location(id, offset)));
+                lastRunId.accumulateAndGet(ruleId, Math::max);
+            });
+            nextSegmentId = Math.max(nextSegmentId, id + 1);
+        }
+    }
+
+    private static int segmentId(Path path) {
+        Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    private Segment createSegment(int capacity) throws IOException {
+        int id = nextSegmentId++;
+        Segment segment = Segment.create(directory.resolve("segment-" + id + ".dat"), id, capacity);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    @Override
+    public <T extends Serializable> void save(long ruleId, T result) {
+        byte[] data = RuleSerializer.serialize(result);
+        release(index.put(ruleId, append(ruleId, System.currentTimeMillis(), ByteBuffer.wrap(data))));
+        lastRunId.accumulateAndGet(ruleId, Math::max);
+    }
+
+    @Override
+    public long getLastRunId() {
+        return lastRunId.get();
+    }
+
+    @Override
+    public <T extends Serializable> T load(long ruleId) {
+        // A concurrent compaction may move the record between reading the index and reading the segment
+        for (int attempt = 0; attempt < 2; ++attempt) {
+            long location = index.get(ruleId);
+            if (location == OffHeapIndex.NOT_FOUND) {
+                return null;
+            }
+            Segment segment = segments.get(segmentOf(location));
+            if (segment != null) {
+                int offset = offsetOf(location);
+                return isExpired(segment.getTime(offset)) ? null : RuleSerializer.deserialize(segment.read(offset));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean contains(long ruleId) {
+        long location = index.get(ruleId);
+        if (location == OffHeapIndex.NOT_FOUND) {
+            return false;
+        }
+        Segment segment = segments.get(segmentOf(location));
+        return segment != null && !isExpired(segment.getTime(offsetOf(location)));
+    }
+
+    /**
+     * Appends a record to the active segment, rolling over to a new segment when it is full
+     *
+     * @return the location of the record
+     */
+    private long append(long ruleId, long time, ByteBuffer data) {
+        while (true) {
+            Segment segment = active;
+            int offset = segment.append(ruleId, time, data);
+            if (offset >= 0) {
+                return location(segment.getId(), offset);
+            }
+            roll(segment, Segment.RECORD_HEADER + data.remaining());
+        }
+    }
+
+    private synchronized void roll(Segment full, int recordSize) {
+        if (active == full) {
+            full.seal();
+            try {
+                active = createSegment(Math.max(segmentSize, recordSize));
+            } catch (IOException e) {
+                throw new RuleException("Failed to create result store segment", e);
+            }
+        }
+    }
+
+    /**
+     * Releases the space of a superseded record
+     */
+    private void release(long location) {
+        if (location != OffHeapIndex.NOT_FOUND) {
+            Segment segment = segments.get(segmentOf(location));
+            if (segment != null) {
+                segment.release(segment.getRecordSize(offsetOf(location)));
+            }
+        }
+    }
+
+    /**
+     * Deletes expired segments and compacts sparse ones
+     */
+    void maintain() {
+        try {
+            long expiry = System.currentTimeMillis() - retention;
+            boolean removed = false;
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                if (segment == active || !segment.isQuiescent()) {
+                    continue;
+                }
+                if (segment.getLastWrite() < expiry || segment.getLiveBytes() <= 0) {
+                    remove(segment);
+                    removed = true;
+                } else if (segment.getLiveBytes() < segment.getUsedBytes() * COMPACTION_RATIO) {
+                    compact(segment, expiry);
+                    remove(segment);
+                    removed = true;
+                }
+            }
+            if (removed) {
+                index.retain(location -> segments.containsKey(segmentOf(location)));
+            }
+            active.force();
+        } catch (RuntimeException e) {
+            log.error("Result store maintenance failed", e);
+        }
+    }
+
+    /**
+     * Flushes the records appended to any segment since the last flush
+     */
+    void flush() {
+        for (Segment segment : segments.values()) {
+            try {
+                segment.force();
+            } catch (RuntimeException e) {
+                log.error("Failed to flush result store segment " + segment.getPath(), e);
+            }
+        }
+    }
+
+    /**
+     * Copies the live, unexpired records of a segment to the active segment
+     */
+    private void compact(Segment segment, long expiry) {
+        segment.forEach((offset, ruleId, time) -> {
+            long location = location(segment.getId(), offset);
+            if (time >= expiry && index.get(ruleId) == location) {
+                long copy = append(ruleId, time, segment.read(offset));
+                if (!index.replace(ruleId, location, copy)) {
+                    // Saved again while being copied
+                    release(copy);
+                }
+            }
+        });
+    }
+
+    private void remove(Segment segment) {
+        segments.remove(segment.getId());
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            log.warn("Failed to delete result store segment " + segment.getPath(), e);
+        }
+    }
+
+    private boolean isExpired(long time) {
+        return time < System.currentTimeMillis() - retention;
+    }
+
+    /**
+     * Returns the count of indexed results, including expired ones not yet removed
+     */
+    public int getCount() {
+        return index.size();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Stops the maintenance task and flushes all segments to disk
+     */
+    @PreDestroy
+    public void close() {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+        for (Segment segment : segments.values()) {
+            try {
+                segment.force();
+                segment.close();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to close result store segment " + segment.getPath(), e);
+            }
+        }
+    }
+
+    private static long location(int segmentId, int offset) {
+        return ((long)segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int segmentOf(long location) {
+        return (int)(location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int)location;
+    }
+}
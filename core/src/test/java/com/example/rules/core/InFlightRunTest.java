@@ -0,0 +1,53 @@
+package com.example.rules.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InFlightRunTest {
+
+    @Test
+    public void shareResult() throws Exception {
+        InFlightRun run = new InFlightRun("key", r -> fail("Run should not be cancelled"));
+        Future<?> first = run.newFuture();
+        assertTrue(run.attach());
+        Future<?> second = run.newFuture();
+
+        run.started(7, null);
+        assertEquals(7, run.getRunId());
+        run.complete("done");
+
+        assertEquals("done", first.get());
+        assertEquals("done", second.get());
+        assertEquals("done", run.join());
+
+        // Completed runs can no longer be joined
+        assertFalse(run.attach());
+    }
+
+    @Test
+    public void cancelLastReference() {
+        AtomicInteger cancellations = new AtomicInteger();
+        InFlightRun run = new InFlightRun("key", r -> cancellations.incrementAndGet());
+        run.started(1, null);
+        Future<?> first = run.newFuture();
+        assertTrue(run.attach());
+        Future<?> second = run.newFuture();
+
+        assertTrue(first.cancel(true));
+        assertFalse(first.cancel(true));
+        assertTrue(first.isCancelled());
+        assertThrows(CancellationException.class, first::get);
+        assertEquals(0, cancellations.get());
+        assertFalse(second.isDone());
+
+        assertTrue(second.cancel(true));
+        assertEquals(1, cancellations.get());
+        assertNull(run.join());
+        assertFalse(run.attach());
+    }
+}
@@ -1,11 +1,19 @@
 package com.example.rules.core;
 
 import com.example.rules.core.repository.RuleSerializer;
+import com.example.rules.core.repository.codec.KryoCodec;
+import com.example.rules.core.repository.codec.RuleCodec;
+import com.example.rules.core.repository.codec.XStreamCodec;
+import com.example.rules.fact.TestRequest;
 import org.junit.jupiter.api.Test;
 
-import java.util.Objects;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.DeflaterOutputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class RuleSerializerTest {
@@ -31,6 +39,81 @@ public class RuleSerializerTest {
         assertEquals("", RuleSerializer.deserializeAsString(new byte[]{1, 2, 3}));
     }
 
+    @Test
+    public void fingerprint() {
+        String fingerprint = RuleSerializer.fingerprint(new TestRequest(5));
+        assertEquals(64, fingerprint.length());
+        assertEquals(fingerprint, RuleSerializer.fingerprint(new TestRequest(5)));
+        assertNotEquals(fingerprint, RuleSerializer.fingerprint(new TestRequest(6)));
+
+        // Independent of the configured codec
+        RuleCodec previous = RuleSerializer.getCodec();
+        try {
+            RuleSerializer.setCodec(new KryoCodec());
+            assertEquals(fingerprint, RuleSerializer.fingerprint(new TestRequest(5)));
+        } finally {
+            RuleSerializer.setCodec(previous);
+        }
+    }
+
+    @Test
+    public void fingerprintIgnoresHashOrder() {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        Map<String, Integer> reversed = new LinkedHashMap<>();
+        Set<String> set = new LinkedHashSet<>();
+        Set<String> reversedSet = new LinkedHashSet<>();
+        for (int i = 0; i < 50; ++i) {
+            map.put("key" + i, i);
+            set.add("item" + i);
+        }
+        for (int i = 49; i >= 0; --i) {
+            reversed.put("key" + i, i);
+            reversedSet.add("item" + i);
+        }
+
+        assertEquals(RuleSerializer.fingerprint(map), RuleSerializer.fingerprint(reversed));
+        assertEquals(RuleSerializer.fingerprint(set), RuleSerializer.fingerprint(reversedSet));
+        reversed.put("key0", -1);
+        assertNotEquals(RuleSerializer.fingerprint(map), RuleSerializer.fingerprint(reversed));
+    }
+
+    @Test
+    public void serializeBinary() {
+        RuleCodec previous = RuleSerializer.getCodec();
+        try {
+            RuleSerializer.setCodec(new KryoCodec());
+            TestRequest request = new TestRequest(5);
+            byte[] binary = RuleSerializer.serialize(request);
+            TestRequest copy = RuleSerializer.deserialize(binary);
+            assertEquals(5, copy.getThreshold());
+            assertTrue(RuleSerializer.deserializeAsString(binary).contains("<threshold>5</threshold>"));
+
+            // Blobs written by another codec remain readable
+            RuleSerializer.setCodec(new XStreamCodec());
+            copy = RuleSerializer.deserialize(binary);
+            assertEquals(5, copy.getThreshold());
+        } finally {
+            RuleSerializer.setCodec(previous);
+        }
+    }
+
+    @Test
+    public void deserializeLegacy() throws Exception {
+        TestClass object = new TestClass();
+        object.setId("Legacy");
+        object.setValue(3);
+
+        // Blobs written before format headers were introduced
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(os)) {
+            out.write(RuleSerializer.serializeAsString(object).getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] legacy = os.toByteArray();
+
+        assertEquals(object, RuleSerializer.deserialize(legacy));
+        assertEquals(RuleSerializer.serializeAsString(object), RuleSerializer.deserializeAsString(legacy));
+    }
+
     public static class TestClass {
 
         private String id;
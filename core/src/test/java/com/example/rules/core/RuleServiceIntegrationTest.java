@@ -5,6 +5,7 @@ import com.example.rules.core.processor.ArbiterFactory;
 import com.example.rules.core.context.RuleContextFactory;
 import com.example.rules.core.processor.TestArbiter;
 import com.example.rules.fact.TestRequest;
+import com.example.rules.fact.TestRequestB;
 import com.example.rules.fact.TestResult;
 import com.example.rules.spi.RuleContext;
 import com.example.rules.spi.arbiter.Arbiter;
@@ -14,6 +15,7 @@ import org.springframework.context.annotation.AnnotationConfigApplicationContext
 
 import java.io.Serializable;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -45,4 +47,13 @@ public class RuleServiceIntegrationTest {
         TestResult result = context.getBean(RuleService.class).run(new TestRequest(5));
         assertNotNull(result);
     }
+
+    @Test
+    public void runStatelessRules() {
+        TestRequestB request = new TestRequestB();
+        request.add(30);
+        TestResult result = context.getBean(RuleService.class).run(request);
+        assertNotNull(result);
+        assertEquals(2, result.getMessages().size());
+    }
 }
@@ -0,0 +1,70 @@
+package com.example.rules.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RunDeadlineTest {
+
+    @Test
+    public void expireWaiting() {
+        RunDeadline deadline = new RunDeadline(1, Instant.now());
+        CompletableFuture<Serializable> future = new CompletableFuture<>();
+        deadline.queued(future, null);
+
+        assertEquals(RunDeadline.State.WAITING, deadline.expire());
+        assertTrue(future.isCancelled());
+        assertTrue(deadline.isExpired());
+
+        // Expires only once, and the queued run never starts
+        assertNull(deadline.expire());
+        assertFalse(deadline.start());
+        assertFalse(deadline.finish());
+    }
+
+    @Test
+    public void expireRunning() {
+        RunDeadline deadline = new RunDeadline(1, Instant.now());
+        CompletableFuture<Serializable> future = new CompletableFuture<>();
+        deadline.queued(future, null);
+
+        assertTrue(deadline.start());
+        assertEquals(RunDeadline.State.RUNNING, deadline.expire());
+        assertFalse(future.isCancelled());
+        assertFalse(deadline.finish());
+    }
+
+    @Test
+    public void finishBeforeDeadline() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            RunDeadline deadline = new RunDeadline(1, Instant.now().plusSeconds(60));
+            ScheduledFuture<?> timer = scheduler.schedule(deadline::expire, 60, TimeUnit.SECONDS);
+            deadline.timer(timer);
+
+            assertTrue(deadline.start());
+            assertTrue(deadline.finish());
+            assertTrue(timer.isCancelled());
+            assertNull(deadline.expire());
+            assertFalse(deadline.isExpired());
+
+            // A timer set after the run finished is cancelled at once
+            RunDeadline finished = new RunDeadline(2, Instant.now().plusSeconds(60));
+            assertTrue(finished.start());
+            assertTrue(finished.finish());
+            ScheduledFuture<?> late = scheduler.schedule(finished::expire, 60, TimeUnit.SECONDS);
+            finished.timer(late);
+            assertTrue(late.isCancelled());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.rules.core.admission;
+
+import com.example.rules.api.RuleRejectedException;
+import com.example.rules.api.RuleRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControllerTest {
+
+    @Test
+    public void reject() {
+        AdmissionController controller = new AdmissionController(new StandardEnvironment(), 2, AdmissionPolicy.REJECT, 0);
+        AdmissionController.Ticket first = controller.admit(QueuedRequest.class);
+        controller.admit(QueuedRequest.class);
+        assertEquals(2, controller.getQueueDepth(QueuedRequest.class));
+
+        RuleRejectedException e = assertThrows(RuleRejectedException.class, () -> controller.admit(QueuedRequest.class));
+        assertEquals(2, e.getQueueDepth());
+        assertEquals(1, controller.getRejectedCount(QueuedRequest.class));
+
+        // Starting a run makes room in the queue
+        assertTrue(first.start());
+        assertEquals(1, controller.getQueueDepth(QueuedRequest.class));
+        controller.admit(QueuedRequest.class);
+    }
+
+    @Test
+    public void shedOldest() {
+        AdmissionController controller = new AdmissionController(new StandardEnvironment(), 1, AdmissionPolicy.SHED_OLDEST, 0);
+        AtomicBoolean shed = new AtomicBoolean();
+        AdmissionController.Ticket first = controller.admit(QueuedRequest.class);
+        first.onShed(() -> shed.set(true));
+
+        AdmissionController.Ticket second = controller.admit(QueuedRequest.class);
+        assertTrue(shed.get());
+        assertFalse(first.start());
+        assertEquals(1, controller.getShedCount(QueuedRequest.class));
+        assertEquals(0, controller.getRejectedCount(QueuedRequest.class));
+
+        assertTrue(second.start());
+        assertEquals(0, controller.getQueueDepth(QueuedRequest.class));
+    }
+
+    @Test
+    public void blockTimeout() {
+        AdmissionController controller = new AdmissionController(new StandardEnvironment(), 1, AdmissionPolicy.BLOCK, 10);
+        controller.admit(QueuedRequest.class);
+        assertThrows(RuleRejectedException.class, () -> controller.admit(QueuedRequest.class));
+    }
+
+    private static class QueuedRequest implements RuleRequest {
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.rules.core.config;
+
+import com.example.rules.api.RuleRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PriorityTaskExecutorTest {
+
+    @Test
+    public void priorityOrder() throws Exception {
+        // The task spawned by the HIGH task inherits its priority, and overtakes the waiting tasks
+        assertEquals(Arrays.asList("high", "inherited", "normal", "low"), runOrder(60_000));
+    }
+
+    @Test
+    public void aging() throws Exception {
+        // Without an aging interval, waiting tasks run in submission order
+        assertEquals(Arrays.asList("low", "normal", "high", "inherited"), runOrder(0));
+    }
+
+    private List<String> runOrder(long aging) throws Exception {
+        PriorityTaskExecutor executor = new PriorityTaskExecutor("Test", 1, aging);
+        try {
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch blocked = new CountDownLatch(1);
+            executor.execute(() -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(TaskPriority.callWith(RuleRequest.Priority.LOW, () -> executor.submit(() -> order.add("low"))));
+            futures.add(executor.submit(() -> order.add("normal")));
+            futures.add(TaskPriority.callWith(RuleRequest.Priority.HIGH, () -> executor.submit(() -> {
+                order.add("high");
+                return executor.submit(() -> order.add("inherited"));
+            })));
+
+            blocked.countDown();
+            for (Future<?> future : futures) {
+                Object spawned = future.get();
+                if (spawned instanceof Future) {
+                    ((Future<?>)spawned).get();
+                }
+            }
+            return order;
+        } finally {
+            executor.destroy();
+        }
+    }
+}
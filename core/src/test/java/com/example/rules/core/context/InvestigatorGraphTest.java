@@ -0,0 +1,86 @@
+package com.example.rules.core.context;
+
+import com.example.rules.api.RuleException;
+import com.example.rules.api.RuleRequest;
+import com.example.rules.spi.investigator.Investigator;
+import com.example.rules.spi.session.RuleSession;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InvestigatorGraphTest {
+
+    @Test
+    public void buildGraph() {
+        InvestigatorA a = new InvestigatorA();
+        InvestigatorB b = new InvestigatorB(InvestigatorA.class);
+        InvestigatorC c = new InvestigatorC(InvestigatorA.class, InvestigatorB.class);
+        InvestigatorGraph graph = InvestigatorGraph.build(Arrays.asList(a, b, c));
+
+        assertEquals(3, graph.size());
+        assertEquals(0, graph.getDependencyCount(graph.indexOf(a)));
+        assertEquals(1, graph.getDependencyCount(graph.indexOf(b)));
+        assertEquals(2, graph.getDependencyCount(graph.indexOf(c)));
+        assertEquals(2, graph.getDependents(graph.indexOf(a)).length);
+        assertTrue(graph.matches(Arrays.asList(new InvestigatorA(), b, c)));
+        assertFalse(graph.matches(Arrays.asList(a, b)));
+    }
+
+    @Test
+    public void detectCycle() {
+        InvestigatorA a = new InvestigatorA();
+        InvestigatorB b = new InvestigatorB(InvestigatorC.class);
+        InvestigatorC c = new InvestigatorC(InvestigatorB.class);
+        RuleException e = assertThrows(RuleException.class, () -> InvestigatorGraph.build(Arrays.asList(a, b, c)));
+        assertTrue(e.getMessage().contains("InvestigatorB, InvestigatorC"));
+    }
+
+    @Test
+    public void ignoreSelfDependency() {
+        InvestigatorA a = new InvestigatorA(InvestigatorA.class);
+        InvestigatorGraph graph = InvestigatorGraph.build(Arrays.asList(a));
+        assertEquals(0, graph.getDependencyCount(0));
+    }
+
+    private static class GraphRequest implements RuleRequest {
+    }
+
+    private abstract static class StubInvestigator implements Investigator<GraphRequest, Object> {
+
+        private final Collection<Class<?>> dependencies;
+
+        StubInvestigator(Class<?>... dependencies) {
+            this.dependencies = Arrays.asList(dependencies);
+        }
+
+        @Override
+        public void gatherFacts(RuleSession session) {
+        }
+
+        @Override
+        public boolean dependsOn(Collection<? extends Investigator<?, ?>> investigators) {
+            return investigators.stream().anyMatch(i -> dependencies.contains(i.getClass()));
+        }
+    }
+
+    private static class InvestigatorA extends StubInvestigator {
+        InvestigatorA(Class<?>... dependencies) {
+            super(dependencies);
+        }
+    }
+
+    private static class InvestigatorB extends StubInvestigator {
+        InvestigatorB(Class<?>... dependencies) {
+            super(dependencies);
+        }
+    }
+
+    private static class InvestigatorC extends StubInvestigator {
+        InvestigatorC(Class<?>... dependencies) {
+            super(dependencies);
+        }
+    }
+}
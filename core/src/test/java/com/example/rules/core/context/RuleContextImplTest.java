@@ -0,0 +1,69 @@
+package com.example.rules.core.context;
+
+import com.example.rules.api.RuleException;
+import com.example.rules.api.RuleRequest;
+import com.example.rules.core.processor.InvestigatorFactory;
+import com.example.rules.spi.investigator.Investigator;
+import com.example.rules.spi.session.RuleSession;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class RuleContextImplTest {
+
+    private static final CountDownLatch started = new CountDownLatch(1);
+    private static final AtomicBoolean finished = new AtomicBoolean();
+
+    @Test
+    public void failedInvestigationWaitsForRunningInvestigators() {
+        InvestigatorFactory investigatorFactory = mock(InvestigatorFactory.class);
+        doReturn(Arrays.asList(new SlowInvestigator(), new FailingInvestigator())).when(investigatorFactory).getInvestigators(any());
+
+        RuleContextImpl context = new RuleContextImpl(1, new InvestigateRequest());
+        context.setInvestigatorFactory(investigatorFactory);
+        context.setExecutor(new SimpleAsyncTaskExecutor("Investigator"));
+
+        assertThrows(RuleException.class, () -> context.investigate(mock(RuleSession.class)));
+        // The session may be closed as soon as investigate returns, so no investigator may still be using it
+        assertTrue(finished.get());
+    }
+
+    private static class InvestigateRequest implements RuleRequest {
+    }
+
+    private static class SlowInvestigator implements Investigator<InvestigateRequest, Object> {
+
+        @Override
+        public void gatherFacts(RuleSession session) {
+            started.countDown();
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            session.insert("late");
+            finished.set(true);
+        }
+    }
+
+    private static class FailingInvestigator implements Investigator<InvestigateRequest, Object> {
+
+        @Override
+        public void gatherFacts(RuleSession session) {
+            try {
+                started.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("Synthetic failure");
+        }
+    }
+}
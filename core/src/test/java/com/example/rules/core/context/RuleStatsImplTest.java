@@ -0,0 +1,110 @@
+package com.example.rules.core.context;
+
+import com.example.rules.fact.TestFact;
+import com.example.rules.fact.TestRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RuleStatsImplTest {
+
+    @Test
+    public void concurrentInvestigators() throws Exception {
+        int threads = 64;
+        int rounds = 100;
+        RuleStatsImpl stats = new RuleStatsImpl();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; ++t) {
+                Class<?> factClass = t % 2 == 0 ? TestFact.class : TestRequest.class;
+                futures.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    for (int i = 0; i < rounds; ++i) {
+                        stats.startFacts(factClass);
+                        stats.finishFacts(factClass, 3);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(threads * rounds * 3, stats.getFactCount());
+        assertEquals(threads * rounds * 3 / 2, stats.getFactCount(TestFact.class));
+        assertEquals(threads * rounds * 3 / 2, stats.getFactStatistics().get("TestRequest").getCount());
+        assertTrue(stats.getFactDuration() >= 0);
+    }
+
+    @Test
+    public void trackConcurrentSpans() throws Exception {
+        TimingTracker tracker = new TimingTracker();
+        assertTrue(tracker.isEmpty());
+
+        tracker.restart("a");
+        Thread other = new Thread(() -> {
+            tracker.restart("a");
+            sleep(20);
+            tracker.end("a");
+        });
+        other.start();
+        sleep(20);
+        other.join();
+        tracker.end();
+
+        // Spans of the same operation on two threads add up, the active time covers their union only
+        assertFalse(tracker.isEmpty());
+        assertTrue(tracker.getElapsed("a") >= 40);
+        assertTrue(tracker.getActive() >= 20);
+        assertTrue(tracker.getActive() <= tracker.getElapsed("a"));
+        assertEquals(tracker.getElapsed("a"), tracker.getTotal());
+
+        // Ending a span not started by this thread has no effect
+        tracker.end("a");
+        assertEquals(0, tracker.getElapsed("b"));
+    }
+
+    @Test
+    public void endNestedSpans() {
+        TimingTracker tracker = new TimingTracker();
+        tracker.restart("outer");
+        tracker.restart("inner");
+        sleep(20);
+        tracker.end();
+        sleep(20);
+
+        // The inner operation ended first, the outer one is still running
+        assertTrue(tracker.getElapsed("inner") >= 20);
+        assertTrue(tracker.getElapsed("inner") < tracker.getElapsed("outer"));
+        assertTrue(tracker.toString().contains("outer: ") && tracker.toString().contains(" ms *"));
+        tracker.end();
+        long outer = tracker.getElapsed("outer");
+        assertTrue(outer >= 40);
+        assertTrue(tracker.getActive() >= outer);
+
+        // Nothing left to end
+        tracker.end();
+        assertEquals(outer, tracker.getElapsed("outer"));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
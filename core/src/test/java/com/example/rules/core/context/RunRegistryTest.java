@@ -0,0 +1,53 @@
+package com.example.rules.core.context;
+
+import com.example.rules.fact.TestRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RunRegistryTest {
+
+    @Test
+    public void cancelSingleRun() {
+        RunRegistry registry = new RunRegistry();
+        RuleContextImpl first = new RuleContextImpl(1, new TestRequest(1));
+        RuleContextImpl second = new RuleContextImpl(2, new TestRequest(2));
+        AtomicInteger halts = new AtomicInteger();
+        first.onStop(halts::incrementAndGet);
+
+        try (RunRegistry.Registration r1 = registry.register(1, first);
+             RunRegistry.Registration r2 = registry.register(2, second)) {
+            assertEquals(2, registry.size());
+            assertSame(first, registry.getContext(1));
+
+            assertTrue(registry.cancel(1));
+            assertTrue(first.isStopped());
+            assertFalse(second.isStopped());
+            assertEquals(1, halts.get());
+
+            // Stopping is idempotent
+            assertTrue(registry.cancel(1));
+            assertEquals(1, halts.get());
+        }
+
+        assertEquals(0, registry.size());
+        assertFalse(registry.cancel(2));
+        assertNull(registry.getContext(1));
+    }
+
+    @Test
+    public void closeStaleRegistration() {
+        RunRegistry registry = new RunRegistry();
+        RunRegistry.Registration stale = registry.register(1, new RuleContextImpl(1, new TestRequest(1)));
+        RuleContextImpl current = new RuleContextImpl(1, new TestRequest(1));
+        RunRegistry.Registration registration = registry.register(1, current);
+
+        // Closing a replaced registration leaves the current one in place
+        stale.close();
+        assertSame(current, registry.getContext(1));
+        registration.close();
+        assertEquals(0, registry.size());
+    }
+}
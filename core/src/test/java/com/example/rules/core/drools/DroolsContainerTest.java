@@ -0,0 +1,84 @@
+package com.example.rules.core.drools;
+
+import com.example.rules.fact.TestFact;
+import com.example.rules.fact.TestResult;
+import com.example.rules.spi.session.RuleSession;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kie.api.KieServices;
+import org.kie.api.builder.KieModule;
+import org.kie.api.builder.KieRepository;
+import org.kie.api.builder.ReleaseId;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DroolsContainerTest {
+
+    @Test
+    public void retireAfterSessionsClosed() {
+        // A container of its own, as retiring disposes the KieContainer
+        DroolsContainer container = new DroolsContainer(KieServices.get().newKieClasspathContainer(), 2, 0);
+        RuleSession stateful = container.newSession("test_a");
+        RuleSession stateless = container.newStatelessSession("test_a");
+
+        container.retire();
+        assertFalse(container.isDisposed());
+
+        // Sessions in use keep running on the retired container
+        stateful.setGlobal("threshold", 5);
+        stateful.setGlobal("res", new TestResult());
+        stateful.insert(new TestFact(1));
+        assertTrue(stateful.runRules() > 0);
+        stateful.close();
+        assertFalse(container.isDisposed());
+
+        stateless.close();
+        assertTrue(container.isDisposed());
+        assertNull(container.newSession("test_a"));
+        assertNull(container.newStatelessSession("test_a"));
+    }
+
+    @Test
+    public void retireIdleContainer() {
+        DroolsContainer container = new DroolsContainer(KieServices.get().newKieClasspathContainer(), 2, 0);
+        container.prepareSession("test_a");
+        assertEquals(1, container.getSessionPool().getIdleCount("test_a"));
+
+        container.retire();
+        assertTrue(container.isDisposed());
+        assertEquals(0, container.getSessionPool().getIdleCount("test_a"));
+    }
+
+    @Test
+    public void failedLoadRestoresRepository(@TempDir Path directory) throws Exception {
+        Path kjar = directory.resolve("rules.jar");
+        TestKjar.write(kjar, "rollback", "1.0", "v1");
+        DroolsContainer loaded = DroolsContainer.load(kjar.toFile(), 2, 0);
+        ReleaseId releaseId = loaded.getKieContainer().getReleaseId();
+        KieRepository repository = KieServices.get().getRepository();
+        KieModule module = repository.getKieModule(releaseId);
+        assertNotNull(module);
+
+        // A broken kjar of the same release leaves the loaded version in the repository
+        Path broken = directory.resolve("broken.jar");
+        TestKjar.writeBroken(broken, "rollback", "1.0");
+        assertThrows(RuntimeException.class, () -> DroolsContainer.load(broken.toFile(), 2, 0));
+        assertSame(module, repository.getKieModule(releaseId));
+
+        // A broken kjar of a new release leaves nothing behind
+        TestKjar.writeBroken(broken, "rollback", "2.0");
+        assertThrows(RuntimeException.class, () -> DroolsContainer.load(broken.toFile(), 2, 0));
+        assertNull(repository.getKieModule(KieServices.get().newReleaseId(TestKjar.GROUP_ID, "rollback", "2.0")));
+
+        RuleSession session = loaded.newSession(TestKjar.SESSION_ID);
+        session.insert(1);
+        assertEquals(1, session.runRules());
+        assertEquals(1, session.getFactCount(String.class));
+        session.close();
+
+        loaded.retire();
+        assertNull(repository.getKieModule(releaseId));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.rules.core.drools;
+
+import com.example.rules.fact.TestFact;
+import com.example.rules.fact.TestResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kie.api.KieServices;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DroolsSessionPoolTest {
+
+    private DroolsSessionPool pool;
+
+    @BeforeEach
+    public void setup() {
+        pool = new DroolsSessionPool(KieServices.get().getKieClasspathContainer(), 2, 60_000);
+    }
+
+    @Test
+    public void reuseSession() {
+        DroolsSession session = pool.newSession("test_a");
+        session.setGlobal("threshold", 5);
+        session.setGlobal("res", new TestResult());
+        session.insert(new TestFact(1));
+        assertEquals(1, session.getFactCount());
+        assertEquals(1, session.getFactCount(TestFact.class));
+        assertEquals(0, session.getFactCount(String.class));
+        assertTrue(session.runRules() > 0);
+        session.close();
+
+        assertEquals(1, pool.getIdleCount("test_a"));
+
+        // Reused session must come back empty
+        session = pool.newSession("test_a");
+        assertEquals(0, session.getFacts(Object.class).count());
+        assertNull(session.getGlobal("res"));
+        session.close();
+
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(1, pool.getCreations());
+    }
+
+    @Test
+    public void boundedPool() {
+        DroolsSession s1 = pool.newSession("test_a");
+        DroolsSession s2 = pool.newSession("test_a");
+        DroolsSession s3 = pool.newSession("test_a");
+        s1.close();
+        s2.close();
+        s3.close();
+
+        assertEquals(2, pool.getIdleCount("test_a"));
+        assertEquals(1, pool.getEvictions());
+
+        pool.clear();
+        assertEquals(0, pool.getIdleCount("test_a"));
+    }
+
+    @Test
+    public void unknownSession() {
+        assertNull(pool.newSession("unknown"));
+    }
+}
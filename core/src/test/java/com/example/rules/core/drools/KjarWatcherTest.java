@@ -0,0 +1,107 @@
+package com.example.rules.core.drools;
+
+import com.example.rules.spi.session.RuleContainer;
+import com.example.rules.spi.session.RuleSession;
+import com.example.rules.spi.session.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class KjarWatcherTest {
+
+    private static final long SETTLE_TIME = 1000;
+    private static final long TIMEOUT = 30_000;
+
+    @TempDir
+    Path directory;
+
+    private final SessionFactory sessionFactory = mock(SessionFactory.class);
+    private final List<RuleContainer> registered = new CopyOnWriteArrayList<>();
+    private KjarWatcher watcher;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        doAnswer(invocation -> registered.add(invocation.getArgument(0))).when(sessionFactory).registerContainer(any());
+        watcher = new KjarWatcher(sessionFactory, directory.toString(), SETTLE_TIME, 2, 0);
+        watcher.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        watcher.stop();
+        registered.forEach(RuleContainer::retire);
+    }
+
+    @Test
+    public void hotReload() throws Exception {
+        Path kjar = directory.resolve("rules.jar");
+
+        // A kjar changing within the settle time is not loaded yet
+        for (int i = 0; i < 3; ++i) {
+            TestKjar.write(kjar, "watched", "1.0", "v1");
+            verify(sessionFactory, after(SETTLE_TIME / 2).never()).registerContainer(any());
+        }
+
+        // Created
+        verify(sessionFactory, timeout(TIMEOUT)).registerContainer(any());
+        assertEquals(TestKjar.GROUP_ID + ":watched:1.0", registered.get(0).getRelease());
+        assertEquals("v1", runRules(registered.get(0)));
+
+        // Modified
+        TestKjar.write(kjar, "watched", "1.1", "v2");
+        verify(sessionFactory, timeout(TIMEOUT).times(2)).registerContainer(any());
+        assertEquals(TestKjar.GROUP_ID + ":watched:1.1", registered.get(1).getRelease());
+        assertEquals("v2", runRules(registered.get(1)));
+
+        // A kjar failing to load leaves the previous version registered
+        TestKjar.writeBroken(kjar, "watched", "1.2");
+        verify(sessionFactory, after(5 * SETTLE_TIME).times(2)).registerContainer(any());
+        verify(sessionFactory, never()).deregisterContainer(any());
+
+        // Deleted
+        Files.delete(kjar);
+        verify(sessionFactory, timeout(TIMEOUT)).deregisterContainer(TestKjar.GROUP_ID + ":watched");
+    }
+
+    @Test
+    public void twoVersionsOfContainer() throws Exception {
+        Path older = directory.resolve("rules-1.0.jar");
+        Path newer = directory.resolve("rules-1.1.jar");
+        TestKjar.write(older, "watched", "1.0", "v1");
+        verify(sessionFactory, timeout(TIMEOUT)).registerContainer(any());
+        TestKjar.write(newer, "watched", "1.1", "v2");
+        verify(sessionFactory, timeout(TIMEOUT).times(2)).registerContainer(any());
+        assertEquals(TestKjar.GROUP_ID + ":watched:1.1", registered.get(1).getRelease());
+
+        // Deleting the registered version falls back to the version still provided by the other kjar
+        Files.delete(newer);
+        verify(sessionFactory, timeout(TIMEOUT).times(3)).registerContainer(any());
+        assertEquals(TestKjar.GROUP_ID + ":watched:1.0", registered.get(2).getRelease());
+        assertEquals("v1", runRules(registered.get(2)));
+        verify(sessionFactory, never()).deregisterContainer(any());
+
+        Files.delete(older);
+        verify(sessionFactory, timeout(TIMEOUT)).deregisterContainer(TestKjar.GROUP_ID + ":watched");
+    }
+
+    private static String runRules(RuleContainer container) {
+        RuleSession session = container.newSession(TestKjar.SESSION_ID);
+        try {
+            session.insert(1);
+            session.runRules();
+            return session.getFacts(String.class).findFirst().orElse(null);
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.rules.core.drools;
+
+import com.example.rules.fact.TestFact;
+import com.example.rules.fact.TestResult;
+import com.example.rules.spi.session.RuleSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.kie.api.KieServices;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatelessDroolsSessionTest {
+
+    private final DroolsContainer container = new DroolsContainer(KieServices.get().newKieClasspathContainer(), 2, 0);
+
+    @AfterEach
+    public void tearDown() {
+        container.retire();
+    }
+
+    @Test
+    public void queryAfterRun() {
+        try (RuleSession session = newSession()) {
+            assertTrue(session.runRules() > 0);
+
+            // Facts inserted by the rules are visible to queries
+            assertEquals(5, session.query("Even query", new String[0]).count());
+        }
+    }
+
+    @Test
+    public void haltBeforeRun() {
+        try (RuleSession session = newSession()) {
+            session.halt();
+            assertEquals(0, session.runRules());
+            assertEquals(10, session.getFactCount(TestFact.class));
+        }
+    }
+
+    private RuleSession newSession() {
+        RuleSession session = container.newStatelessSession("test_a");
+        session.setGlobal("threshold", 5);
+        session.setGlobal("res", new TestResult());
+        for (int i = 0; i < 10; ++i) {
+            session.insert(new TestFact(i));
+        }
+        return session;
+    }
+}
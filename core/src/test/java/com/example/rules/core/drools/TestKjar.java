@@ -0,0 +1,79 @@
+package com.example.rules.core.drools;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Writes source kjars, built by Drools when loaded, for tests of hot reloading
+ */
+final class TestKjar {
+
+    static final String GROUP_ID = "com.example.rules.test";
+    static final String SESSION_ID = "hot";
+
+    private TestKjar() {
+    }
+
+    /**
+     * Writes a kjar with a single session, whose rule inserts the given message
+     *
+     * @param file       the kjar file
+     * @param artifactId the artifact ID of the kjar
+     * @param version    the version of the kjar
+     * @param message    the message inserted by the rule, must be a valid Java string literal
+     */
+    static void write(Path file, String artifactId, String version, String message) throws IOException {
+        write(file, artifactId, version, "package com.example.rules.hot;\n\n"
+                + "rule \"Hot\"\n"
+                + "when\n"
+                + "    Integer()\n"
+                + "then\n"
+                + "    insert(\"" + message + "\");\n"
+                + "end\n");
+    }
+
+    /**
+     * Writes a kjar whose rules do not compile
+     */
+    static void writeBroken(Path file, String artifactId, String version) throws IOException {
+        write(file, artifactId, version, "package com.example.rules.hot;\n\nrule \"Broken\"\nwhen\n    UnknownFact()\nthen\nend\n");
+    }
+
+    private static void write(Path file, String artifactId, String version, String drl) throws IOException {
+        String kmodule = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<kmodule xmlns=\"http://www.drools.org/xsd/kmodule\">\n"
+                + "    <kbase name=\"hot\" packages=\"com.example.rules.hot\">\n"
+                + "        <ksession name=\"" + SESSION_ID + "\"/>\n"
+                + "    </kbase>\n"
+                + "</kmodule>\n";
+        String pom = "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+                + "    <modelVersion>4.0.0</modelVersion>\n"
+                + "    <groupId>" + GROUP_ID + "</groupId>\n"
+                + "    <artifactId>" + artifactId + "</artifactId>\n"
+                + "    <version>" + version + "</version>\n"
+                + "</project>\n";
+        String properties = "groupId=" + GROUP_ID + "\nartifactId=" + artifactId + "\nversion=" + version + "\n";
+        String maven = "META-INF/maven/" + GROUP_ID + "/" + artifactId + "/";
+
+        // Written aside and moved into place, so that a watcher never sees a partial kjar
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(temp))) {
+            entry(out, "META-INF/kmodule.xml", kmodule);
+            entry(out, maven + "pom.xml", pom);
+            entry(out, maven + "pom.properties", properties);
+            entry(out, "com/example/rules/hot/hot.drl", drl);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void entry(JarOutputStream out, String name, String content) throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        out.write(content.getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.rules.core.metrics;
+
+import com.example.rules.api.RuleRequest;
+import com.example.rules.core.admission.AdmissionController;
+import com.example.rules.core.context.RuleContextImpl;
+import com.example.rules.core.context.RunRegistry;
+import com.example.rules.fact.TestRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RuleMetricsTest {
+
+    @Test
+    public void recordMeters() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Collections.singletonMap("meterRegistry", registry));
+        RunRegistry runRegistry = new RunRegistry();
+        RuleMetrics metrics = new RuleMetrics(beanFactory.getBeanProvider(MeterRegistry.class), runRegistry,
+                beanFactory.getBeanProvider(AdmissionController.class));
+
+        metrics.recordArbiter(String.class, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.recordArbiter(String.class, TimeUnit.MILLISECONDS.toNanos(15));
+        metrics.recordInvestigator(Integer.class, TimeUnit.MILLISECONDS.toNanos(1));
+        metrics.recordFacts(Long.class, 10);
+        metrics.recordFacts(Long.class, 0);
+        metrics.recordFirings(String.class, 3);
+        metrics.recordRun(RuleRequest.State.SUCCESS);
+        metrics.recordRun(RuleRequest.State.RUNNING);
+
+        Timer arbiter = registry.get("rules.arbiter").tag("arbiter", "String").timer();
+        assertEquals(2, arbiter.count());
+        assertEquals(20, arbiter.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, registry.get("rules.investigator").tag("investigator", "Integer").timer().count());
+        assertEquals(10, registry.get("rules.facts").tag("fact", "Long").counter().count());
+        assertEquals(3, registry.get("rules.firings").tag("arbiter", "String").counter().count());
+        assertEquals(1, registry.get("rules.runs").tag("outcome", "success").counter().count());
+        assertEquals(0, registry.get("rules.runs").tag("outcome", "timeout").counter().count());
+        assertTrue(registry.find("rules.runs").tag("outcome", "running").meters().isEmpty());
+        assertTrue(registry.find("rules.runs.queued").meters().isEmpty());
+
+        try (RunRegistry.Registration ignored = runRegistry.register(1, new RuleContextImpl(1, new TestRequest(1)))) {
+            assertEquals(1, registry.get("rules.runs.active").gauge().value());
+        }
+        assertEquals(0, registry.get("rules.runs.active").gauge().value());
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.rules.core.processor;
+
+import com.example.rules.fact.TestRequestB;
+import com.example.rules.spi.RuleContext;
+import com.example.rules.spi.investigator.AbstractInvestigator;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import static org.springframework.beans.factory.config.ConfigurableBeanFactory.SCOPE_PROTOTYPE;
+
+@Component
+@Scope(SCOPE_PROTOTYPE)
+public class RequestInvestigator extends AbstractInvestigator<TestRequestB, TestRequestB> {
+
+    public RequestInvestigator(RuleContext context) {
+        super(context);
+    }
+
+    @Override
+    protected void doGather() {
+        insert(getContext().getRequest());
+    }
+}
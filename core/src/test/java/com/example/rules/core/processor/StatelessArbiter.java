@@ -0,0 +1,28 @@
+package com.example.rules.core.processor;
+
+import com.example.rules.fact.Message;
+import com.example.rules.fact.TestRequestB;
+import com.example.rules.fact.TestResult;
+import com.example.rules.spi.RuleContext;
+import com.example.rules.spi.arbiter.AbstractArbiter;
+import com.example.rules.spi.arbiter.RuleSet;
+import com.example.rules.spi.session.RuleSession;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import static org.springframework.beans.factory.config.ConfigurableBeanFactory.SCOPE_PROTOTYPE;
+
+@RuleSet(value = "test_b", stateless = true)
+@Component
+@Scope(SCOPE_PROTOTYPE)
+public class StatelessArbiter extends AbstractArbiter<TestRequestB, TestResult> {
+
+    public StatelessArbiter(RuleContext context) {
+        super(context);
+    }
+
+    @Override
+    protected void afterRules(RuleSession session) {
+        session.getFacts(Message.class).forEach(m -> getResult().add(m.getText()));
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.rules.core.repository;
+
+import com.example.rules.api.RuleRequest;
+import com.example.rules.core.domain.RuleLog;
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class RuleLogJournalTest {
+
+    private DataSource dataSource;
+    private EntityManagerFactory entityManagerFactory;
+    private JdbcTemplate jdbcTemplate;
+    private RuleLogJournal journal;
+
+    @BeforeEach
+    public void setup() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:journal;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(h2);
+        jdbcTemplate.execute("create sequence rule_log_seq start with 1 increment by " + RuleLog.ID_ALLOCATION_SIZE);
+        jdbcTemplate.execute("create table rule_log (id bigint primary key, create_time timestamp, update_time timestamp, state int,"
+                + " request_class varchar(255), request_hash int, request_fingerprint varchar(64), rules_release varchar(255),"
+                + " request_data blob, request_description varchar(255), result_class varchar(255),"
+                + " result_description varchar(255), message varchar(255))");
+        dataSource = spy(h2);
+
+        SessionFactoryImplementor sessionFactory = mock(SessionFactoryImplementor.class, RETURNS_DEEP_STUBS);
+        when(sessionFactory.getJdbcServices().getDialect().getSequenceNextValString(RuleLog.SEQUENCE_NAME))
+                .thenReturn("select next value for " + RuleLog.SEQUENCE_NAME);
+        entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.unwrap(SessionFactoryImplementor.class)).thenReturn(sessionFactory);
+
+        journal = new RuleLogJournal(dataSource, entityManagerFactory, 100, 10, 10, 50);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        journal.close();
+        jdbcTemplate.execute("drop all objects");
+    }
+
+    @Test
+    public void retryFailedBatch() throws Exception {
+        long first = journal.start(ruleLog("first"));
+        awaitWritten(first);
+
+        // The next batch fails once, and is retried before any later transition is written
+        doThrow(new SQLException("Synthetic failure")).doCallRealMethod().when(dataSource).getConnection();
+        long id = journal.start(ruleLog("second"));
+        assertEquals(RuleRequest.State.PENDING, journal.getPendingState(id));
+        journal.update(id, RuleRequest.State.RUNNING, null, null, null);
+        journal.update(id, RuleRequest.State.SUCCESS, "TestResult", "Result", "Done");
+        awaitWritten(id);
+
+        Map<String, Object> row = jdbcTemplate.queryForMap("select * from rule_log where id = ?", id);
+        assertEquals(RuleRequest.State.SUCCESS.ordinal(), ((Number)row.get("STATE")).intValue());
+        assertEquals("second", row.get("REQUEST_DESCRIPTION"));
+        assertEquals("TestResult", row.get("RESULT_CLASS"));
+        assertEquals("Done", row.get("MESSAGE"));
+        assertEquals(2, jdbcTemplate.queryForObject("select count(*) from rule_log", Integer.class));
+    }
+
+    @Test
+    public void seedSequenceAboveExistingRows() throws Exception {
+        // Rows written with IDs from the generator used before the sequence existed
+        journal.close();
+        jdbcTemplate.update("insert into rule_log (id, state) values (?, ?)", 120L, RuleRequest.State.SUCCESS.ordinal());
+
+        journal = new RuleLogJournal(dataSource, entityManagerFactory, 100, 10, 10, 50);
+        long id = journal.start(ruleLog("seeded"));
+        assertTrue(id > 120, "Run ID " + id + " collides with existing rows");
+        awaitWritten(id);
+        for (int i = 0; i < RuleLog.ID_ALLOCATION_SIZE; ++i) {
+            assertTrue(journal.start(ruleLog("next")) > 120);
+        }
+    }
+
+    private void awaitWritten(long id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (journal.getPendingState(id) != null) {
+            assertTrue(System.currentTimeMillis() < deadline, "Run " + id + " was not written");
+            Thread.sleep(10);
+        }
+    }
+
+    private static RuleLog ruleLog(String description) {
+        RuleLog ruleLog = new RuleLog();
+        ruleLog.setState(RuleRequest.State.PENDING);
+        ruleLog.setRequestClass("TestRequest");
+        ruleLog.setRequestDescription(description);
+        return ruleLog;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.rules.core.repository;
+
+import com.example.rules.api.RuleRequest;
+import com.example.rules.core.domain.RuleLog;
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class RuleLogRepositoryTest {
+
+    @Test
+    public void findLegacyRequest() {
+        LegacyRequest request = new LegacyRequest(5);
+        RuleLog legacy = ruleLog(1L, request, null);
+        RuleLog other = ruleLog(2L, new LegacyRequest(6), null);
+        RuleLog fingerprinted = ruleLog(3L, request, RuleSerializer.fingerprint(request));
+
+        RuleLogRepository repository = mock(RuleLogRepository.class, CALLS_REAL_METHODS);
+        doReturn(Optional.empty()).when(repository).findFirstByRequestFingerprintOrderByCreateTimeDesc(anyString());
+        doAnswer(i -> Stream.of(fingerprinted, other, legacy))
+                .when(repository).findByRequestClassAndRequestHashOrderByCreateTimeDesc(LegacyRequest.class.getName(), request.hashCode());
+
+        // Rows logged before fingerprints are found by hash code and equality
+        assertEquals(Optional.of(legacy), repository.findMostRecentRequest(request));
+
+        doReturn(Optional.of(fingerprinted)).when(repository).findFirstByRequestFingerprintOrderByCreateTimeDesc(fingerprinted.getRequestFingerprint());
+        assertEquals(Optional.of(fingerprinted), repository.findMostRecentRequest(request));
+    }
+
+    private static RuleLog ruleLog(long id, LegacyRequest request, String fingerprint) {
+        RuleLog ruleLog = new RuleLog();
+        ruleLog.setId(id);
+        ruleLog.setRequestData(RuleSerializer.serialize(request));
+        ruleLog.setRequestFingerprint(fingerprint);
+        return ruleLog;
+    }
+
+    @Data
+    private static class LegacyRequest implements RuleRequest {
+
+        private final int threshold;
+    }
+}
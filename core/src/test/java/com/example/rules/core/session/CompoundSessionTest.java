@@ -0,0 +1,104 @@
+package com.example.rules.core.session;
+
+import com.example.rules.spi.session.RuleSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CompoundSessionTest {
+
+    @Mock
+    private RuleSession sessionA;
+
+    @Mock
+    private RuleSession sessionB;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void parallelRun() {
+        when(sessionA.runRules()).thenReturn(2);
+        when(sessionB.runRules()).thenReturn(3);
+        when(sessionA.getRuleHistogram()).thenReturn(Collections.singletonMap("rule", 2));
+        when(sessionB.getRuleHistogram()).thenReturn(Collections.singletonMap("rule", 3));
+
+        CompoundSession session = new CompoundSession(Arrays.asList(sessionA, sessionB), executor);
+        assertEquals(5, session.runRules());
+
+        Map<String, Integer> histogram = session.getRuleHistogram();
+        assertEquals(5, histogram.get("rule"));
+    }
+
+    @Test
+    public void parallelFailure() {
+        when(sessionA.runRules()).thenReturn(1);
+        when(sessionB.runRules()).thenThrow(new IllegalStateException("Failed"));
+
+        CompoundSession session = new CompoundSession(Arrays.asList(sessionA, sessionB), executor);
+        assertThrows(IllegalStateException.class, session::runRules);
+        verify(sessionA).halt();
+    }
+
+    @Test
+    public void failureWaitsForFiringSessions() {
+        CountDownLatch firing = new CountDownLatch(1);
+        CountDownLatch halted = new CountDownLatch(1);
+        AtomicBoolean finished = new AtomicBoolean();
+        when(sessionA.runRules()).thenAnswer(invocation -> {
+            firing.await(10, TimeUnit.SECONDS);
+            throw new IllegalStateException("Failed");
+        });
+        when(sessionB.runRules()).thenAnswer(invocation -> {
+            firing.countDown();
+            halted.await(10, TimeUnit.SECONDS);
+            // Still firing for a while after being halted
+            Thread.sleep(200);
+            finished.set(true);
+            return 1;
+        });
+        doAnswer(invocation -> {
+            halted.countDown();
+            return null;
+        }).when(sessionB).halt();
+
+        CompoundSession session = new CompoundSession(Arrays.asList(sessionA, sessionB), executor);
+        assertThrows(IllegalStateException.class, session::runRules);
+        // The sub-sessions may be closed once the failure propagates, so none may still be firing
+        assertTrue(finished.get());
+    }
+
+    @Test
+    public void haltBeforeRun() {
+        CompoundSession session = new CompoundSession(Arrays.asList(sessionA, sessionB), executor);
+        session.halt();
+        assertEquals(0, session.runRules());
+        verify(sessionA, never()).runRules();
+        verify(sessionB, never()).runRules();
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.rules.core.session;
+
+import com.example.rules.spi.session.RuleSession;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueuedSessionTest {
+
+    @Test
+    public void concurrentInsert() throws Exception {
+        RecordingSession target = new RecordingSession();
+        QueuedSession session = new QueuedSession(target, 64, 16);
+
+        int producers = 8;
+        int count = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; ++p) {
+                int offset = p * count;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < count; ++i) {
+                        if (i % 2 == 0) {
+                            session.insert(offset + i);
+                        } else {
+                            session.insertAll(Collections.singletonList(offset + i));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        session.flush();
+        assertFalse(target.concurrentAccess.get());
+        assertEquals(producers * count, session.getFactCount());
+        assertEquals(producers * count, new HashSet<>(target.facts).size());
+    }
+
+    @Test
+    public void readWhileInserting() throws Exception {
+        RecordingSession target = new RecordingSession();
+        QueuedSession session = new QueuedSession(target, 64, 16);
+
+        int count = 20000;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> producer = executor.submit(() -> {
+                for (int i = 0; i < count; ++i) {
+                    session.insert(i);
+                }
+            });
+            // Reads never overlap a batch being inserted
+            long previous = 0;
+            while (!producer.isDone()) {
+                long facts = session.getFactCount(Integer.class);
+                assertTrue(facts >= previous);
+                previous = facts;
+                session.setGlobal("count", facts);
+            }
+            producer.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertFalse(target.concurrentAccess.get());
+        assertEquals(count, session.getFactCount());
+    }
+
+    /**
+     * A session which is not thread-safe, flagging any concurrent access
+     */
+    private static class RecordingSession implements RuleSession {
+
+        private final List<Object> facts = new ArrayList<>();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicBoolean concurrentAccess = new AtomicBoolean();
+
+        @Override
+        public <F> void insert(F fact) {
+            enter();
+            facts.add(fact);
+            active.decrementAndGet();
+        }
+
+        @Override
+        public <T> Stream<T> getFacts(Class<T> factClass) {
+            enter();
+            List<T> list = new ArrayList<>();
+            for (Object fact : facts) {
+                if (factClass.isInstance(fact)) {
+                    list.add(factClass.cast(fact));
+                }
+            }
+            active.decrementAndGet();
+            return list.stream();
+        }
+
+        @Override
+        public Stream<Object[]> query(String queryId, String[] objectNames, Object... arguments) {
+            return Stream.empty();
+        }
+
+        @Override
+        public void setGlobal(String identifier, Object value) {
+            enter();
+            active.decrementAndGet();
+        }
+
+        @Override
+        public <T> T getGlobal(String identifier) {
+            return null;
+        }
+
+        @Override
+        public int runRules() {
+            return 0;
+        }
+
+        @Override
+        public void halt() {
+        }
+
+        @Override
+        public int getRuleCount() {
+            return 0;
+        }
+
+        @Override
+        public Map<String, Integer> getRuleHistogram() {
+            return Collections.emptyMap();
+        }
+
+        private void enter() {
+            if (active.incrementAndGet() > 1) {
+                concurrentAccess.set(true);
+            }
+        }
+    }
+}
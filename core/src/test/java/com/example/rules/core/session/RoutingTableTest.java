@@ -0,0 +1,92 @@
+package com.example.rules.core.session;
+
+import com.example.rules.api.RuleException;
+import com.example.rules.spi.session.RuleContainer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RoutingTableTest {
+
+    private final RuleContainer classpath = container("Drools Classpath", "classpath", "test_a");
+    private final RuleContainer v1 = container("rules", "rules:1", "x", "y");
+    private final RuleContainer v2 = container("rules", "rules:2", "x", "z");
+
+    @Test
+    public void routeToContainers() {
+        RoutingTable empty = new RoutingTable(classpath);
+        RoutingTable table = empty.withContainer(v1);
+
+        assertSame(v1, table.route("x", 0));
+        assertSame(v1, table.route("y", 99));
+        assertSame(classpath, table.route("test_a", 0));
+        assertSame(classpath, table.route("unknown", 0));
+        assertEquals("classpath,rules:1", table.getRelease());
+
+        // Tables are immutable, each change creating a new version
+        assertSame(classpath, empty.route("x", 0));
+        assertEquals(0, empty.getVersion());
+        assertEquals(1, table.getVersion());
+
+        RoutingTable replaced = table.withContainer(v2);
+        assertSame(v2, replaced.route("x", 0));
+        assertSame(classpath, replaced.route("y", 0));
+        assertEquals("classpath,rules:2", replaced.getRelease());
+
+        RoutingTable removed = replaced.withoutContainer("RULES");
+        assertSame(classpath, removed.route("x", 0));
+        assertEquals("classpath", removed.getRelease());
+    }
+
+    @Test
+    public void routeToCanary() {
+        RoutingTable table = new RoutingTable(classpath).withContainer(v1).withCanary(v2, 25);
+
+        assertSame(v2, table.route("x", 0));
+        assertSame(v2, table.route("x", 24));
+        assertSame(v1, table.route("x", 25));
+        assertSame(v1, table.route("y", 0));
+        // Requests outside the canary go where they would without it
+        assertSame(v2, table.route("z", 0));
+        assertSame(classpath, table.route("z", 25));
+        assertEquals("classpath,rules:1,rules:2", table.getRelease());
+
+        RoutingTable promoted = table.withCanaryPromoted("rules");
+        assertSame(v2, promoted.route("x", 99));
+        assertSame(classpath, promoted.route("y", 0));
+        assertEquals("classpath,rules:2", promoted.getRelease());
+
+        RoutingTable aborted = table.withoutCanary("rules");
+        assertSame(v1, aborted.route("x", 0));
+        assertSame(classpath, aborted.route("z", 0));
+        assertEquals("classpath,rules:1", aborted.getRelease());
+    }
+
+    @Test
+    public void canaryOfUnregisteredContainer() {
+        RoutingTable table = new RoutingTable(classpath).withCanary(v2, 10);
+        assertSame(v2, table.route("x", 5));
+        assertSame(classpath, table.route("x", 50));
+        assertEquals("classpath", table.withoutCanary("rules").getRelease());
+    }
+
+    @Test
+    public void invalidCanary() {
+        RoutingTable table = new RoutingTable(classpath).withContainer(v1);
+        assertThrows(IllegalArgumentException.class, () -> table.withCanary(v2, 101));
+        assertThrows(RuleException.class, () -> table.withCanaryPromoted("rules"));
+        assertSame(table, table.withoutCanary("rules"));
+    }
+
+    private static RuleContainer container(String id, String release, String... sessions) {
+        RuleContainer container = mock(RuleContainer.class);
+        when(container.getId()).thenReturn(id);
+        when(container.getRelease()).thenReturn(release);
+        when(container.getProvidedSessions()).thenReturn(Set.of(sessions));
+        return container;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.rules.core.session;
+
+import com.example.rules.fact.TestFact;
+import com.example.rules.fact.TestResult;
+import com.example.rules.spi.session.RuleContainer;
+import com.example.rules.spi.session.RuleSession;
+import com.example.rules.spi.session.SessionWarmup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class SessionFactoryImplTest {
+
+    private SessionFactoryImpl sessionFactory;
+
+    @BeforeEach
+    public void setup() {
+        sessionFactory = new SessionFactoryImpl(2, 0);
+        sessionFactory.setWarmUpThreads(2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void warmUp() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        sessionFactory.setWarmUpRuns(5);
+        sessionFactory.setWarmups(Collections.singletonList(new SessionWarmup() {
+            @Override
+            public Set<String> getSessionIds() {
+                return Collections.singleton("test_a");
+            }
+
+            @Override
+            public void prepare(RuleSession session) {
+                runs.incrementAndGet();
+                session.setGlobal("threshold", 5);
+                session.setGlobal("res", new TestResult());
+                for (int i = 0; i < 10; ++i) {
+                    session.insert(new TestFact(i));
+                }
+            }
+        }));
+
+        assertFalse(sessionFactory.isWarm());
+        sessionFactory.warmUp().get(60, TimeUnit.SECONDS);
+        assertTrue(sessionFactory.isWarm());
+        assertEquals(5, runs.get());
+
+        // Warm-up only runs once
+        assertSame(sessionFactory.warmUp(), sessionFactory.warmUp());
+        assertEquals(5, runs.get());
+    }
+
+    @Test
+    public void failedWarmupRun() throws Exception {
+        sessionFactory.setWarmups(Collections.singletonList(new SessionWarmup() {
+            @Override
+            public Set<String> getSessionIds() {
+                return Set.of("test_a", "unknown");
+            }
+
+            @Override
+            public void prepare(RuleSession session) {
+                throw new IllegalStateException("Synthetic failure");
+            }
+        }));
+
+        // A failed synthetic run does not prevent the service from becoming ready
+        sessionFactory.warmUp().get(60, TimeUnit.SECONDS);
+        assertTrue(sessionFactory.isWarm());
+    }
+
+    @Test
+    public void warmUpDisabled() {
+        sessionFactory.setWarmUpEnabled(false);
+        sessionFactory.onStartup();
+        assertTrue(sessionFactory.isWarm());
+    }
+
+    @Test
+    public void replaceContainer() {
+        RuleContainer v1 = container("rules", "rules:1", "custom");
+        RuleContainer v2 = container("rules", "rules:2", "custom");
+
+        sessionFactory.registerContainer(v1);
+        assertTrue(sessionFactory.getRelease().contains("rules:1"));
+        sessionFactory.getSession("custom", false);
+        verify(v1).newSession("custom");
+
+        // Requests switch to the new version and the previous one is retired
+        sessionFactory.registerContainer(v2);
+        assertTrue(sessionFactory.getRelease().contains("rules:2"));
+        assertFalse(sessionFactory.getRelease().contains("rules:1"));
+        verify(v1).retire();
+        sessionFactory.getSession("custom", false);
+        verify(v2).newSession("custom");
+        verify(v1, times(1)).newSession("custom");
+
+        // Sessions of the classpath container are unaffected
+        RuleSession session = sessionFactory.getSession("test_a", false);
+        assertNotNull(session);
+        session.close();
+
+        sessionFactory.deregisterContainer("RULES");
+        verify(v2).retire();
+        assertFalse(sessionFactory.getRelease().contains("rules:2"));
+    }
+
+    @Test
+    public void canaryContainer() {
+        RuleContainer v1 = container("rules", "rules:1", "custom");
+        RuleContainer v2 = container("rules", "rules:2", "custom");
+        RuleContainer v3 = container("rules", "rules:3", "custom");
+
+        sessionFactory.registerContainer(v1);
+        long version = sessionFactory.getRoutingVersion();
+        sessionFactory.registerCanary(v2, 100);
+        assertEquals(version + 1, sessionFactory.getRoutingVersion());
+        sessionFactory.getSession("custom", false);
+        verify(v2).newSession("custom");
+        verify(v1, never()).newSession("custom");
+
+        // Promoting the canary retires the previous version
+        sessionFactory.promoteCanary("rules");
+        verify(v1).retire();
+        verify(v2, never()).retire();
+
+        // Removing a canary retires it
+        sessionFactory.registerCanary(v3, 0);
+        sessionFactory.getSession("custom", false);
+        verify(v3, never()).newSession("custom");
+        sessionFactory.deregisterCanary("rules");
+        verify(v3).retire();
+        verify(v2, never()).retire();
+    }
+
+    private static RuleContainer container(String id, String release, String sessionId) {
+        RuleContainer container = mock(RuleContainer.class);
+        when(container.getId()).thenReturn(id);
+        when(container.getRelease()).thenReturn(release);
+        when(container.getProvidedSessions()).thenReturn(Collections.singleton(sessionId));
+        when(container.newSession(sessionId)).thenReturn(mock(RuleSession.class));
+        return container;
+    }
+}
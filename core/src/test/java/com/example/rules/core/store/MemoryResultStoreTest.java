@@ -0,0 +1,55 @@
+package com.example.rules.core.store;
+
+import com.example.rules.fact.TestResult;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoryResultStoreTest {
+
+    @Test
+    public void saveAndLoad() {
+        MemoryResultStore store = new MemoryResultStore(1 << 20, 60_000, false);
+        TestResult result = new TestResult();
+        result.add("Message");
+        store.save(1, result);
+
+        assertTrue(store.contains(1));
+        assertFalse(store.contains(2));
+
+        TestResult loaded = store.load(1);
+        assertEquals(result, loaded);
+        assertNotSame(result, loaded);
+        assertNull(store.load(2));
+
+        assertEquals(1, store.getHits());
+        assertEquals(1, store.getMisses());
+        assertTrue(store.getWeight() > 0);
+    }
+
+    @Test
+    public void compressed() {
+        MemoryResultStore store = new MemoryResultStore(1 << 20, 60_000, true);
+        TestResult result = new TestResult();
+        for (int i = 0; i < 100; ++i) {
+            result.add("Message " + i);
+        }
+        store.save(1, result);
+        assertEquals(result, store.load(1));
+    }
+
+    @Test
+    public void boundedSize() {
+        MemoryResultStore store = new MemoryResultStore(4096, 60_000, false);
+        for (int i = 0; i < 100; ++i) {
+            TestResult result = new TestResult();
+            result.add("Message " + i);
+            store.save(i, result);
+        }
+        store.cleanUp();
+
+        assertTrue(store.getWeight() <= 4096);
+        assertTrue(store.getCount() < 100);
+        assertTrue(store.getEvictions() > 0);
+    }
+}
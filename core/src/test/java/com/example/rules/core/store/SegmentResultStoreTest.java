@@ -0,0 +1,159 @@
+package com.example.rules.core.store;
+
+import com.example.rules.fact.TestResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentResultStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void saveAndReopen() {
+        SegmentResultStore store = new SegmentResultStore(directory.toString(), 4096, 60_000, 0, 0);
+        for (int i = 0; i < 100; ++i) {
+            store.save(i, result("Message " + i));
+        }
+        assertTrue(store.getSegmentCount() > 1);
+        assertEquals(result("Message 42"), store.load(42));
+        assertTrue(store.contains(99));
+        assertFalse(store.contains(100));
+        assertNull(store.load(100));
+        store.close();
+
+        store = new SegmentResultStore(directory.toString(), 4096, 60_000, 0, 0);
+        assertEquals(100, store.getCount());
+        assertEquals(result("Message 42"), store.load(42));
+
+        // Recovered segments hold live records, which maintenance must keep
+        int segments = store.getSegmentCount();
+        store.maintain();
+        assertEquals(segments, store.getSegmentCount());
+        assertEquals(100, store.getCount());
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(result("Message " + i), store.load(i));
+        }
+        store.close();
+    }
+
+    @Test
+    public void reopenAndCompact() {
+        SegmentResultStore store = new SegmentResultStore(directory.toString(), 4096, 60_000, 0, 0);
+        for (int i = 0; i < 200; ++i) {
+            store.save(i % 5, result("Message " + i));
+        }
+        store.close();
+
+        // Superseded records are released on recovery, so sparse segments are still compacted
+        store = new SegmentResultStore(directory.toString(), 4096, 60_000, 0, 0);
+        int segments = store.getSegmentCount();
+        store.maintain();
+        assertTrue(store.getSegmentCount() < segments);
+        assertEquals(5, store.getCount());
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(result("Message " + (195 + i)), store.load(i));
+        }
+        store.close();
+    }
+
+    @Test
+    public void compaction() {
+        SegmentResultStore store = new SegmentResultStore(directory.toString(), 4096, 60_000, 0, 0);
+        for (int i = 0; i < 200; ++i) {
+            store.save(i % 5, result("Message " + i));
+        }
+        int segments = store.getSegmentCount();
+        store.maintain();
+
+        assertTrue(store.getSegmentCount() < segments);
+        assertEquals(5, store.getCount());
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(result("Message " + (195 + i)), store.load(i));
+        }
+        store.close();
+    }
+
+    @Test
+    public void retention() throws Exception {
+        SegmentResultStore store = new SegmentResultStore(directory.toString(), 4096, 1, 0, 0);
+        store.save(1, result("Message"));
+        Thread.sleep(10);
+        assertNull(store.load(1));
+        assertFalse(store.contains(1));
+        store.close();
+    }
+
+    @Test
+    public void concurrentSaves() throws Exception {
+        SegmentResultStore store = new SegmentResultStore(directory.toString(), 8192, 60_000, 0, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; ++t) {
+                int base = t * 250;
+                futures.add(executor.submit(() -> {
+                    for (int i = base; i < base + 250; ++i) {
+                        store.save(i, result("Message " + i));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1000, store.getCount());
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(result("Message " + i), store.load(i));
+        }
+        store.close();
+    }
+
+    @Test
+    public void skipIncompleteRecord() throws Exception {
+        SegmentResultStore store = new SegmentResultStore(directory.toString(), 8192, 60_000, 0, 0);
+        for (int i = 1; i <= 10; ++i) {
+            store.save(i, result("Message " + i));
+        }
+        store.close();
+
+        // The first record was reserved but never completed
+        try (FileChannel channel = FileChannel.open(directory.resolve("segment-0.dat"), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, 0);
+            length.flip();
+            channel.write(ByteBuffer.allocate(4).putInt(0, -length.getInt()), 0);
+        }
+
+        store = new SegmentResultStore(directory.toString(), 8192, 60_000, 0, 0);
+        assertEquals(9, store.getCount());
+        assertNull(store.load(1));
+        for (int i = 2; i <= 10; ++i) {
+            assertEquals(result("Message " + i), store.load(i));
+        }
+        // Run IDs must not restart below those of the recovered results
+        assertEquals(10, store.getLastRunId());
+        store.close();
+    }
+
+    private static TestResult result(String message) {
+        TestResult result = new TestResult();
+        result.add(message);
+        return result;
+    }
+}
@@ -4,6 +4,8 @@ import com.example.rules.api.RuleRequest;
 import com.example.rules.spi.session.RuleSession;
 
 import java.io.Serializable;
+import java.time.Duration;
+import java.time.Instant;
 
 /**
  * A context containing information about a rule run
@@ -56,6 +58,30 @@ public interface RuleContext {
 
     RuleStats getStats();
 
+    /**
+     * Returns the time by which the run must complete, after which it is stopped
+     * <p>Investigators can use it to bound their own I/O, such as query or connection timeouts.</p>
+     *
+     * @return the deadline, or null if the run has none
+     */
+    default Instant getDeadline() {
+        return null;
+    }
+
+    /**
+     * Returns the time left before the deadline of the run
+     *
+     * @return the remaining time, zero once the deadline has passed, or null if the run has no deadline
+     */
+    default Duration getRemainingTime() {
+        Instant deadline = getDeadline();
+        if (deadline == null) {
+            return null;
+        }
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
     /**
      * Creates a new RuleSession, based on the sessionIds requested and any other IDs registered with the request
      *
@@ -64,10 +90,31 @@ public interface RuleContext {
      */
     RuleSession newSession(String... sessionIds);
 
+    /**
+     * Creates a new stateless RuleSession, based on the sessionIds requested and any other IDs registered with the request
+     *
+     * @param sessionIds the IDs of rule sessions to provide
+     * @return a RuleSession encapsulating stateless sessions for the provided IDs
+     */
+    RuleSession newStatelessSession(String... sessionIds);
+
     /**
      * Spawns Investigators in parallel to gather facts, accounting for dependencies if any exist
      */
     void investigate(RuleSession session);
 
     boolean isStopped();
+
+    /**
+     * Stops the run, cancelling running investigators and halting the rule session
+     */
+    void stop();
+
+    /**
+     * Registers an action to take when the run is stopped, either cancelled or past its deadline
+     * <p>The action is taken immediately if the run is already stopped.</p>
+     *
+     * @param action the action
+     */
+    void onStop(Runnable action);
 }
@@ -3,13 +3,11 @@ package com.example.rules.spi.arbiter;
 import com.example.rules.api.*;
 import com.example.rules.spi.RuleContext;
 import com.example.rules.spi.RuleStats;
-import com.example.rules.spi.session.RuleCancellationEvent;
 import com.example.rules.spi.session.RuleSession;
 import com.example.rules.spi.utils.ClassUtils;
 import org.apache.commons.lang3.SerializationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.event.EventListener;
 
 import java.io.Serializable;
 import java.util.Map;
@@ -27,11 +25,13 @@ public abstract class AbstractArbiter<R extends RuleRequest, O extends Serializa
     private static final String[] EMPTY_RULE_SET = new String[]{};
     private static final Map<Class<?>, Class<?>> resultClasses = new ConcurrentHashMap<>();
     private static final Map<Class<?>, String[]> ruleSetMap = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Boolean> statelessMap = new ConcurrentHashMap<>();
 
     protected final Logger LOG = LoggerFactory.getLogger(getClass());
 
     private final RuleContext context;
     private final String[] ruleSets;
+    private final boolean stateless;
     private final O result;
 
     private volatile RuleSession runningSession;
@@ -58,6 +58,10 @@ public abstract class AbstractArbiter<R extends RuleRequest, O extends Serializa
             RuleSet annotation = getClass().getAnnotation(RuleSet.class);
             return annotation != null ? annotation.value() : EMPTY_RULE_SET;
         });
+        stateless = statelessMap.computeIfAbsent(getClass(), clazz -> {
+            RuleSet annotation = getClass().getAnnotation(RuleSet.class);
+            return annotation != null && annotation.stateless();
+        });
     }
 
     protected final RuleContext getContext() {
@@ -75,6 +79,7 @@ public abstract class AbstractArbiter<R extends RuleRequest, O extends Serializa
 
     @Override
     public final O processRules() {
+        context.onStop(this::haltSession);
         try {
             beforeSession();
             runSession();
@@ -98,7 +103,7 @@ public abstract class AbstractArbiter<R extends RuleRequest, O extends Serializa
     }
 
     private void runSession() {
-        try (RuleSession session = context.newSession(ruleSets)) {
+        try (RuleSession session = stateless ? context.newStatelessSession(ruleSets) : context.newSession(ruleSets)) {
             // Don't bother running if no rules are defined for the session
             int totalRules = session.getRuleCount();
             if (totalRules > 0) {
@@ -115,6 +120,10 @@ public abstract class AbstractArbiter<R extends RuleRequest, O extends Serializa
                 runningSession = session;
                 int ruleCount;
                 try {
+                    if (context.isStopped()) {
+                        // Cancelled, or past its deadline, before the session could be halted
+                        throw new CancellationException();
+                    }
                     ruleCount = session.runRules();
                 } finally {
                     runningSession = null;
@@ -127,12 +136,11 @@ public abstract class AbstractArbiter<R extends RuleRequest, O extends Serializa
     }
 
     /**
-     * Listener to process session cancellations, stopping the rule session if it is in progress
+     * Halts the rule session if it is in progress, as the context is stopped
      */
-    @EventListener(RuleCancellationEvent.class)
-    public void onCancellationEvent(RuleCancellationEvent event) {
+    private void haltSession() {
         RuleSession session = runningSession;
-        if (session != null && context.getId() == event.getSessionId()) {
+        if (session != null) {
             session.halt();
         }
     }
@@ -14,4 +14,10 @@ public @interface RuleSet {
      * A collection of rule session IDs to be executed by an Arbiter
      */
     String[] value();
+
+    /**
+     * Runs the rule sessions in stateless mode, executing all inserted facts and globals in a single batch
+     * <p>Suitable for arbiters which insert facts once, fire once and read the result</p>
+     */
+    boolean stateless() default false;
 }
@@ -88,6 +88,25 @@ public abstract class AbstractInvestigator<R extends RuleRequest, F> implements
         }
     }
 
+    /**
+     * Inserts a group of Facts into the session in a single call, after passing each through any defined functions
+     *
+     * @param facts the Facts to insert
+     */
+    protected final void insertAll(Iterable<? extends F> facts) {
+        List<F> processed = facts instanceof Collection ? new ArrayList<>(((Collection<?>)facts).size()) : new ArrayList<>();
+        for (F fact : facts) {
+            fact = processFact(fact);
+            if (fact != null) {
+                processed.add(fact);
+            }
+        }
+        if (!processed.isEmpty()) {
+            session.insertAll(processed);
+            factCount += processed.size();
+        }
+    }
+
     /**
      * Process a fact after extraction before insert into the session
      * <br/>This method may return null if the resultant fact should not be inserted into the session
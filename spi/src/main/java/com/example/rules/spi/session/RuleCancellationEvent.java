@@ -3,6 +3,10 @@ package com.example.rules.spi.session;
 import lombok.Getter;
 import org.springframework.context.ApplicationEvent;
 
+/**
+ * Published once a rule run has been cancelled
+ * <p>The run itself is stopped directly through its context, this event only notifies other observers.</p>
+ */
 public class RuleCancellationEvent extends ApplicationEvent {
 
     @Getter private final long sessionId;
@@ -15,6 +15,13 @@ public interface RuleContainer {
      */
     String getId();
 
+    /**
+     * Returns the release of the rules in this container, changing whenever the rules may change.
+     */
+    default String getRelease() {
+        return getId();
+    }
+
     /**
      * Returns a Set of sessions provided by this container.
      */
@@ -28,6 +35,36 @@ public interface RuleContainer {
      */
     RuleSession newSession(String sessionId);
 
+    /**
+     * Creates a new stateless RulesSession for the given ID.
+     * <p>Containers without stateless support provide a regular session.</p>
+     *
+     * @param sessionId the ID of the RulesSession
+     * @return a new RulesSession
+     */
+    default RuleSession newStatelessSession(String sessionId) {
+        return newSession(sessionId);
+    }
+
+    /**
+     * Prepares a session ahead of its first request, e.g. building its rules
+     *
+     * @param sessionId the ID of the RulesSession
+     */
+    default void prepareSession(String sessionId) {
+        RuleSession session = newSession(sessionId);
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    /**
+     * Retires the container once it has been replaced or de-registered.
+     * <p>Sessions still in use must keep running on it, its resources being released once they are closed.</p>
+     */
+    default void retire() {
+    }
+
     /**
      * Returns a Stream of the RuleInfo stored in this container.
      */
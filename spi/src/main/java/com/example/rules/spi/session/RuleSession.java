@@ -18,6 +18,15 @@ public interface RuleSession extends AutoCloseable {
      */
     <F> void insert(F fact);
 
+    /**
+     * Inserts a group of Facts into the session's working memory in a single call
+     *
+     * @param facts the Facts to insert
+     */
+    default <F> void insertAll(Iterable<F> facts) {
+        facts.forEach(this::insert);
+    }
+
     /**
      * Retrieves a Stream of Facts of the given class present in this session
      *
@@ -79,6 +88,16 @@ public interface RuleSession extends AutoCloseable {
         return getFacts(Object.class).count();
     }
 
+    /**
+     * Retrieves the count of facts of the given class attached to this session
+     *
+     * @param factClass the Fact class to count
+     * @return the count of facts of the given class attached to this session
+     */
+    default long getFactCount(Class<?> factClass) {
+        return getFacts(factClass).count();
+    }
+
     /**
      * Externally assign a logger to be used by this session
      *
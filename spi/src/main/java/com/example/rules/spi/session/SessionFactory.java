@@ -9,10 +9,36 @@ public interface SessionFactory {
 
     <R extends RuleRequest> RuleSession getSession(R request, String... ruleSets);
 
+    <R extends RuleRequest> RuleSession getStatelessSession(R request, String... ruleSets);
+
     void registerContainer(RuleContainer container);
 
     void deregisterContainer(String id);
 
+    /**
+     * Registers a new version of a container as its canary, receiving a percentage of the requests for its sessions
+     * <p>Any previous canary of the container is replaced.</p>
+     *
+     * @param canary the new version of the container
+     * @param weight the percentage of requests routed to the canary
+     */
+    void registerCanary(RuleContainer canary, int weight);
+
+    /**
+     * Replaces a container by its canary, which then receives all requests
+     */
+    void promoteCanary(String id);
+
+    /**
+     * Removes the canary of a container, which then receives all requests again
+     */
+    void deregisterCanary(String id);
+
+    /**
+     * Returns the combined release of all registered containers
+     */
+    String getRelease();
+
     Stream<RuleInfo> getRuleInfo();
 
     Stream<RuleInfo> getRuleInfo(RuleRequest request);
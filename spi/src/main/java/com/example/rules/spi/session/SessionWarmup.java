@@ -0,0 +1,21 @@
+package com.example.rules.spi.session;
+
+import java.util.Set;
+
+/**
+ * Provides synthetic runs of rule sessions, fired at startup so that the first requests run on warm code paths
+ */
+public interface SessionWarmup {
+
+    /**
+     * Returns the IDs of the sessions to warm up
+     */
+    Set<String> getSessionIds();
+
+    /**
+     * Prepares a warm-up run, setting the globals of the session and inserting synthetic facts
+     *
+     * @param session the session about to be fired
+     */
+    void prepare(RuleSession session);
+}
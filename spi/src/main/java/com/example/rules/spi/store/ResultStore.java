@@ -7,4 +7,18 @@ public interface ResultStore {
     <T extends Serializable> void save(long ruleId, T result);
 
     <T extends Serializable> T load(long ruleId);
+
+    /**
+     * Checks whether a result is stored for a run, stores should override this when it can be answered without loading the result
+     */
+    default boolean contains(long ruleId) {
+        return load(ruleId) != null;
+    }
+
+    /**
+     * Returns the highest run ID of the results kept across restarts, 0 for stores which do not persist results
+     */
+    default long getLastRunId() {
+        return 0;
+    }
 }